@@ -17,22 +17,10 @@
  */
 package org.redhat.sbomer.dto;
 
-import java.io.IOException;
-
-import org.jboss.pnc.common.json.JsonUtils;
-
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -49,10 +37,10 @@ public class ArtifactCache {
 
     private final String purl;
 
-    private final JsonNode info;
+    private final ArtifactInfo info;
 
     @lombok.Builder(builderClassName = "Builder", toBuilder = true)
-    private ArtifactCache(String id, String purl, JsonNode info) {
+    private ArtifactCache(String id, String purl, ArtifactInfo info) {
         this.id = id;
         this.purl = purl;
         this.info = info;
@@ -60,19 +48,7 @@ public class ArtifactCache {
 
     @JsonIgnore
     public ArtifactInfo getArtifactInfo() {
-
-        try {
-            // Retrieved from DB
-            if (info instanceof TextNode) {
-                return JsonUtils.fromJson(info.asText(), ArtifactInfo.class);
-            } else {
-                // Not retrieved from DB
-                String jsonString = JsonUtils.toJson(info);
-                return JsonUtils.fromJson(jsonString, ArtifactInfo.class);
-            }
-        } catch (IOException e) {
-            return ArtifactInfo.builder().build();
-        }
+        return info != null ? info : ArtifactInfo.builder().build();
     }
 
     @JsonPOJOBuilder(withPrefix = "")
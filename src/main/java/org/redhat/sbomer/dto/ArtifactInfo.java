@@ -25,6 +25,10 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+/**
+ * Information about an artifact used to enrich the components. Instances are immutable, they are shared by all the
+ * enrichments through the {@link org.redhat.sbomer.service.ArtifactInfoCache}.
+ */
 @Data
 @ToString
 @EqualsAndHashCode
@@ -45,7 +49,7 @@ public class ArtifactInfo {
     private final String scmTag;
     private final String scmExternalUrl;
     private final String environmentImage;
-    private String buildSystem = "PNC";
+    private final String buildSystem;
 
     @lombok.Builder(builderClassName = "Builder", toBuilder = true)
     private ArtifactInfo(
@@ -0,0 +1,62 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import lombok.Data;
+
+/**
+ * The information of a finished PNC build, which never changes.
+ */
+@Data
+@JsonDeserialize(builder = BuildInfo.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BuildInfo {
+
+    private final String id;
+    private final String scmUrl;
+    private final String scmRevision;
+    private final String scmTag;
+    private final String scmExternalUrl;
+    private final String environmentImage;
+
+    @lombok.Builder(builderClassName = "Builder", toBuilder = true)
+    private BuildInfo(
+            String id,
+            String scmUrl,
+            String scmRevision,
+            String scmTag,
+            String scmExternalUrl,
+            String environmentImage) {
+        this.id = id;
+        this.scmUrl = scmUrl;
+        this.scmRevision = scmRevision;
+        this.scmTag = scmTag;
+        this.scmExternalUrl = scmExternalUrl;
+        this.environmentImage = environmentImage;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static final class Builder {
+    }
+
+}
@@ -0,0 +1,90 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.dto;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+@Data
+@ToString
+@EqualsAndHashCode
+@JsonDeserialize(builder = EnrichmentJob.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EnrichmentJob {
+
+    private final String id;
+
+    private final String buildId;
+
+    private final String sbomSpec;
+
+    private final String status;
+
+    private final String stage;
+
+    private final String reason;
+
+    private final Instant creationTime;
+
+    private final Instant startTime;
+
+    private final Instant endTime;
+
+    private final Integer componentCount;
+
+    private final Integer rhComponentCount;
+
+    @lombok.Builder(builderClassName = "Builder", toBuilder = true)
+    private EnrichmentJob(
+            String id,
+            String buildId,
+            String sbomSpec,
+            String status,
+            String stage,
+            String reason,
+            Instant creationTime,
+            Instant startTime,
+            Instant endTime,
+            Integer componentCount,
+            Integer rhComponentCount) {
+        this.id = id;
+        this.buildId = buildId;
+        this.sbomSpec = sbomSpec;
+        this.status = status;
+        this.stage = stage;
+        this.reason = reason;
+        this.creationTime = creationTime;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.componentCount = componentCount;
+        this.rhComponentCount = rhComponentCount;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "")
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static final class Builder {
+    }
+
+}
@@ -0,0 +1,30 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.errors;
+
+/**
+ * PNC could not be reached or responded with an error. Unlike other {@link ApplicationException}s (e.g. a build not
+ * found in PNC), the same request might succeed later.
+ */
+public class PncUnavailableException extends ApplicationException {
+    private static final long serialVersionUID = 1L;
+
+    public PncUnavailableException(String msg, Object... params) {
+        super(msg, params);
+    }
+}
@@ -30,16 +30,20 @@ import org.mapstruct.ReportingPolicy;
         componentModel = "cdi")
 public interface ArtifactCacheMapper {
 
-    @Mapping(target = "id", ignore = true)
-    @Mapping(target = "purl", source = "purl")
-    @Mapping(target = "info", source = "info")
-    @BeanMapping(ignoreUnmappedSourceProperties = { "artifactInfo", "id" })
-    ArtifactCache toEntity(org.redhat.sbomer.dto.ArtifactCache dtoEntity);
+    /**
+     * Maps the DTO to a new entity (without an id), the referenced {@link org.redhat.sbomer.model.PncBuild} is not
+     * persisted yet.
+     */
+    default ArtifactCache toEntity(org.redhat.sbomer.dto.ArtifactCache dtoEntity) {
+        return ArtifactCache.of(dtoEntity.getPurl(), dtoEntity.getArtifactInfo());
+    }
 
     @Mapping(target = "id", expression = "java( dbEntity.getId().toString() )")
     @Mapping(target = "purl", source = "purl")
-    @Mapping(target = "info", source = "info")
-    @BeanMapping(ignoreUnmappedSourceProperties = { "persistent", "id" })
+    @Mapping(target = "info", expression = "java( dbEntity.toArtifactInfo() )")
+    @BeanMapping(
+            ignoreUnmappedSourceProperties = { "persistent", "id", "identifier", "md5", "sha1", "sha256", "publicUrl",
+                    "originUrl", "buildSystem", "build" })
     org.redhat.sbomer.dto.ArtifactCache toDTO(ArtifactCache dbEntity);
 
 }
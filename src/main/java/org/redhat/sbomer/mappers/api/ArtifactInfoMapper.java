@@ -18,6 +18,7 @@
 package org.redhat.sbomer.mappers.api;
 
 import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.dto.BuildInfo;
 import org.jboss.pnc.dto.Artifact;
 import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
@@ -31,26 +32,27 @@ import org.mapstruct.ReportingPolicy;
         componentModel = "cdi")
 public interface ArtifactInfoMapper {
 
-    @Mapping(target = "identifier", source = "identifier")
-    @Mapping(target = "purl", source = "purl")
-    @Mapping(target = "md5", source = "md5")
-    @Mapping(target = "sha1", source = "sha1")
-    @Mapping(target = "sha256", source = "sha256")
-    @Mapping(target = "buildId", expression = "java( artifact.getBuild().getId().toString() )")
-    @Mapping(target = "publicUrl", source = "publicUrl")
-    @Mapping(target = "originUrl", source = "originUrl")
-    @Mapping(target = "scmUrl", expression = "java( artifact.getBuild().getScmUrl() )")
-    @Mapping(target = "scmRevision", expression = "java( artifact.getBuild().getScmRevision() )")
-    @Mapping(target = "scmTag", expression = "java( artifact.getBuild().getScmTag() )")
-    @Mapping(target = "scmExternalUrl", expression = "java( artifact.getBuild().getScmRepository().getExternalUrl() )")
-    @Mapping(
-            target = "environmentImage",
-            expression = "java( artifact.getBuild().getEnvironment().getSystemImageRepositoryUrl() + \"/\" + artifact.getBuild().getEnvironment().getSystemImageId() )")
+    /**
+     * Maps the artifact-level information of the artifact, and the build-level information of its (cached) build.
+     */
+    @Mapping(target = "identifier", source = "artifact.identifier")
+    @Mapping(target = "purl", source = "artifact.purl")
+    @Mapping(target = "md5", source = "artifact.md5")
+    @Mapping(target = "sha1", source = "artifact.sha1")
+    @Mapping(target = "sha256", source = "artifact.sha256")
+    @Mapping(target = "buildId", source = "build.id")
+    @Mapping(target = "publicUrl", source = "artifact.publicUrl")
+    @Mapping(target = "originUrl", source = "artifact.originUrl")
+    @Mapping(target = "scmUrl", source = "build.scmUrl")
+    @Mapping(target = "scmRevision", source = "build.scmRevision")
+    @Mapping(target = "scmTag", source = "build.scmTag")
+    @Mapping(target = "scmExternalUrl", source = "build.scmExternalUrl")
+    @Mapping(target = "environmentImage", source = "build.environmentImage")
     @Mapping(target = "buildSystem", ignore = true)
     @BeanMapping(
             ignoreUnmappedSourceProperties = { "artifactQuality", "buildCategory", "creationTime", "deployPath",
                     "deployUrl", "filename", "id", "importDate", "modificationTime", "qualityLevelReason", "size",
                     "build", "creationUser", "modificationUser", "targetRepository" })
-    ArtifactInfo toArtifactInfo(Artifact artifact);
+    ArtifactInfo toArtifactInfo(Artifact artifact, BuildInfo build);
 
 }
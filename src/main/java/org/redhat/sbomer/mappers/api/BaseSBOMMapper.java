@@ -35,6 +35,7 @@ public interface BaseSBOMMapper {
     @Mapping(target = "generationTime", ignore = true)
     @Mapping(target = "buildId", source = "buildId")
     @Mapping(target = "sbom", source = "bom")
+    @Mapping(target = "enrichmentFingerprints", ignore = true)
     @BeanMapping(ignoreUnmappedSourceProperties = { "cycloneDxBom", "generationTime", "id" })
     BaseSBOM toEntity(org.redhat.sbomer.dto.BaseSBOM dtoEntity);
 
@@ -42,7 +43,7 @@ public interface BaseSBOMMapper {
     @Mapping(target = "buildId", source = "buildId")
     @Mapping(target = "generationTime", source = "generationTime")
     @Mapping(target = "bom", source = "sbom")
-    @BeanMapping(ignoreUnmappedSourceProperties = { "persistent", "cycloneDxBom", "id" })
+    @BeanMapping(ignoreUnmappedSourceProperties = { "persistent", "cycloneDxBom", "id", "enrichmentFingerprints" })
     org.redhat.sbomer.dto.BaseSBOM toDTO(BaseSBOM dbEntity);
 
 }
\ No newline at end of file
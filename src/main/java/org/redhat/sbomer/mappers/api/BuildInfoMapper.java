@@ -0,0 +1,55 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.mappers.api;
+
+import org.jboss.pnc.dto.Build;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+import org.redhat.sbomer.dto.BuildInfo;
+import org.redhat.sbomer.model.PncBuild;
+
+@Mapper(
+        unmappedSourcePolicy = ReportingPolicy.WARN,
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        implementationPackage = "org.redhat.sbomer.mappers",
+        componentModel = "cdi")
+public interface BuildInfoMapper {
+
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "scmUrl", source = "scmUrl")
+    @Mapping(target = "scmRevision", source = "scmRevision")
+    @Mapping(target = "scmTag", source = "scmTag")
+    @Mapping(
+            target = "scmExternalUrl",
+            expression = "java( build.getScmRepository() != null ? build.getScmRepository().getExternalUrl() : null )")
+    @Mapping(
+            target = "environmentImage",
+            expression = "java( build.getEnvironment() != null ? build.getEnvironment().getSystemImageRepositoryUrl() "
+                    + "+ \"/\" + build.getEnvironment().getSystemImageId() : null )")
+    @BeanMapping(ignoreByDefault = true)
+    BuildInfo toBuildInfo(Build build);
+
+    @BeanMapping(ignoreUnmappedSourceProperties = { "persistent", "lastAccessed" })
+    BuildInfo toDTO(PncBuild dbEntity);
+
+    @Mapping(target = "lastAccessed", ignore = true)
+    PncBuild toEntity(BuildInfo dtoEntity);
+
+}
@@ -0,0 +1,39 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.mappers.api;
+
+import org.redhat.sbomer.model.EnrichmentJob;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(
+        unmappedSourcePolicy = ReportingPolicy.WARN,
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        implementationPackage = "org.redhat.sbomer.mappers",
+        componentModel = "cdi")
+public interface EnrichmentJobMapper {
+
+    @Mapping(target = "id", expression = "java( dbEntity.getId().toString() )")
+    @Mapping(target = "status", expression = "java( dbEntity.getStatus().name() )")
+    @Mapping(target = "stage", expression = "java( dbEntity.getStage() != null ? dbEntity.getStage().name() : null )")
+    @BeanMapping(ignoreUnmappedSourceProperties = { "persistent", "id", "status", "stage", "heartbeatTime" })
+    org.redhat.sbomer.dto.EnrichmentJob toDTO(EnrichmentJob dbEntity);
+
+}
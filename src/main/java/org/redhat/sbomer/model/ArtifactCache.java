@@ -21,49 +21,73 @@ import java.time.Instant;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.constraints.NotBlank;
 
-import org.cyclonedx.exception.ParseException;
-import org.cyclonedx.model.Bom;
-import org.cyclonedx.parsers.JsonParser;
 import org.hibernate.annotations.DynamicUpdate;
-import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
-import org.redhat.sbomer.validation.ArtifactJsonProperty;
-import org.redhat.sbomer.validation.CycloneDxBom;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.utils.PurlUtils;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.databind.JsonNode;
-
-import io.quarkiverse.hibernate.types.json.JsonBinaryType;
-import io.quarkiverse.hibernate.types.json.JsonTypes;
 import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+/**
+ * Artifact information cached from PNC. Artifact-level information is stored in columns, build-level information in
+ * the referenced {@link PncBuild}, shared by all the artifacts of the same build.
+ */
 @DynamicUpdate
 @Getter
 @Setter
 @EqualsAndHashCode(callSuper = true)
 @Entity
-@TypeDef(name = JsonTypes.JSON_BIN, typeClass = JsonBinaryType.class)
 @ToString
 @Table(
         name = "artifact_cache",
-        indexes = { @Index(name = "idx_artifact_cache_purl", columnList = "purl") },
-        uniqueConstraints = @UniqueConstraint(name = "uq_artifact_cache_purl", columnNames = { "purl" }))
-@NamedQueries({ @NamedQuery(name = ArtifactCache.FIND_BY_PURL, query = "FROM ArtifactCache WHERE purl = ?1") })
+        indexes = { @Index(name = "idx_artifact_cache_build_id", columnList = "build_id"),
+                @Index(name = "idx_artifact_cache_last_accessed", columnList = "last_accessed") },
+        uniqueConstraints = @UniqueConstraint(
+                name = "uq_artifact_cache_purl_hash_purl",
+                columnNames = { "purl_hash", "purl" }))
+@NamedQueries({
+        @NamedQuery(
+                name = ArtifactCache.FIND_BY_PURL,
+                query = "FROM ArtifactCache a LEFT JOIN FETCH a.build WHERE a.purlHash = ?1 AND a.purl = ?2"),
+        @NamedQuery(
+                name = ArtifactCache.FIND_BY_PURLS,
+                query = "FROM ArtifactCache a LEFT JOIN FETCH a.build WHERE a.purlHash IN ?1"),
+        @NamedQuery(
+                name = ArtifactCache.FIND_BY_BUILD_ID,
+                query = "FROM ArtifactCache a LEFT JOIN FETCH a.build WHERE a.build.id = ?1 ORDER BY a.purl"),
+        @NamedQuery(
+                name = ArtifactCache.FIND_STALE_PURLS,
+                query = "SELECT a.purl FROM ArtifactCache a WHERE a.lastAccessed >= ?1 "
+                        + "AND (a.fetchedAt IS NULL OR a.fetchedAt < ?2) ORDER BY a.fetchedAt NULLS FIRST"),
+        @NamedQuery(
+                name = ArtifactCache.FIND_COLDEST_PURLS,
+                query = "SELECT a.purl FROM ArtifactCache a ORDER BY a.lastAccessed"),
+        @NamedQuery(
+                name = ArtifactCache.FIND_PURLS_FETCHED_SINCE,
+                query = "SELECT a.purl FROM ArtifactCache a WHERE a.fetchedAt >= ?1") })
 public class ArtifactCache extends PanacheEntityBase {
 
     public static final String FIND_BY_PURL = "ArtifactCache.findByPurl";
+    public static final String FIND_BY_PURLS = "ArtifactCache.findByPurls";
+    public static final String FIND_BY_BUILD_ID = "ArtifactCache.findByBuildId";
+    public static final String FIND_STALE_PURLS = "ArtifactCache.findStalePurls";
+    public static final String FIND_COLDEST_PURLS = "ArtifactCache.findColdestPurls";
+    public static final String FIND_PURLS_FETCHED_SINCE = "ArtifactCache.findPurlsFetchedSince";
 
     @Id
     @Column(nullable = false, updatable = false)
@@ -73,9 +97,121 @@ public class ArtifactCache extends PanacheEntityBase {
     @NotBlank(message = "Purl identifier missing")
     private String purl;
 
-    @Type(type = JsonTypes.JSON_BIN)
-    @Column(name = "info", columnDefinition = JsonTypes.JSON_BIN)
-    @ArtifactJsonProperty
-    private JsonNode info;
+    /**
+     * Hash of the (canonical) purl, see {@link PurlUtils#hash(String)}. The purls are unique along with their hash, the
+     * lookups (and the other statements by purl) filter on both, so that they use the index of the unique constraint
+     * by its leading hash column. There is no index of the purls alone.
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "purl_hash", nullable = false, updatable = false)
+    private long purlHash;
+
+    @Column(name = "identifier", length = 1024)
+    private String identifier;
+
+    @Column(name = "md5", length = 32)
+    private String md5;
+
+    @Column(name = "sha1", length = 40)
+    private String sha1;
+
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "public_url", length = 2048)
+    private String publicUrl;
+
+    @Column(name = "origin_url", length = 2048)
+    private String originUrl;
+
+    @Column(name = "build_system")
+    private String buildSystem;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "build_id")
+    private PncBuild build;
+
+    /**
+     * When the artifact information was last fetched from PNC (or imported).
+     */
+    @Column(name = "fetched_at")
+    private Instant fetchedAt;
+
+    /**
+     * When the artifact was last looked up, tracked with a delay (see
+     * {@link org.redhat.sbomer.service.ArtifactCacheMaintenanceService}). Set when the artifact is stored, so that
+     * the eviction can use its index.
+     */
+    @Column(name = "last_accessed", nullable = false)
+    private Instant lastAccessed;
+
+    /**
+     * Sets the canonical form of the purl, along with its hash.
+     */
+    public void setPurl(String purl) {
+        this.purl = PurlUtils.canonicalize(purl);
+        this.purlHash = this.purl != null ? PurlUtils.hash(this.purl) : 0;
+    }
+
+    /**
+     * Creates a new entry (without an id) from the artifact information.
+     */
+    public static ArtifactCache of(String purl, ArtifactInfo info) {
+        ArtifactCache artifactCache = new ArtifactCache();
+        artifactCache.setPurl(purl);
+        artifactCache.setArtifactInfo(info);
+        return artifactCache;
+    }
+
+    /**
+     * Sets all the columns, including the ones of the (new, not persisted) {@link PncBuild}, from the artifact
+     * information.
+     */
+    public void setArtifactInfo(ArtifactInfo info) {
+        identifier = info.getIdentifier();
+        md5 = info.getMd5();
+        sha1 = info.getSha1();
+        sha256 = info.getSha256();
+        publicUrl = info.getPublicUrl();
+        originUrl = info.getOriginUrl();
+        buildSystem = info.getBuildSystem();
+
+        if (info.getBuildId() == null) {
+            build = null;
+        } else {
+            build = new PncBuild();
+            build.setId(info.getBuildId());
+            build.setScmUrl(info.getScmUrl());
+            build.setScmRevision(info.getScmRevision());
+            build.setScmTag(info.getScmTag());
+            build.setScmExternalUrl(info.getScmExternalUrl());
+            build.setEnvironmentImage(info.getEnvironmentImage());
+        }
+    }
+
+    public ArtifactInfo toArtifactInfo() {
+        ArtifactInfo.Builder builder = ArtifactInfo.builder()
+                .identifier(identifier)
+                .purl(purl)
+                .md5(md5)
+                .sha1(sha1)
+                .sha256(sha256)
+                .publicUrl(publicUrl)
+                .originUrl(originUrl)
+                .buildSystem(buildSystem);
+
+        if (build != null) {
+            builder.buildId(build.getId())
+                    .scmUrl(build.getScmUrl())
+                    .scmRevision(build.getScmRevision())
+                    .scmTag(build.getScmTag())
+                    .scmExternalUrl(build.getScmExternalUrl())
+                    .environmentImage(build.getEnvironmentImage());
+        }
+
+        return builder.build();
+    }
 
 }
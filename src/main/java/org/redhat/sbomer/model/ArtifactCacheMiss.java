@@ -0,0 +1,77 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.model;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.annotations.DynamicUpdate;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Negative entry of the {@link ArtifactCache}: a purl which could not be found in PNC. Until the entry expires, the purl
+ * is not looked up in PNC again.
+ */
+@DynamicUpdate
+@Getter
+@Setter
+@EqualsAndHashCode(callSuper = true)
+@Entity
+@ToString
+@Table(
+        name = "artifact_cache_miss",
+        uniqueConstraints = @UniqueConstraint(name = "uq_artifact_cache_miss_purl", columnNames = { "purl" }))
+@NamedQueries({
+        @NamedQuery(
+                name = ArtifactCacheMiss.FIND_VALID_BY_PURLS,
+                query = "SELECT purl FROM ArtifactCacheMiss WHERE purl IN ?1 AND expirationTime > ?2") })
+public class ArtifactCacheMiss extends PanacheEntityBase {
+
+    public static final String FIND_VALID_BY_PURLS = "ArtifactCacheMiss.findValidByPurls";
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "purl", nullable = false, updatable = false)
+    @NotBlank(message = "Purl identifier missing")
+    private String purl;
+
+    @Column(name = "creation_time", nullable = false, updatable = false)
+    @NotNull
+    private Instant creationTime;
+
+    @Column(name = "expiration_time", nullable = false, updatable = false)
+    @NotNull
+    private Instant expirationTime;
+
+}
@@ -18,6 +18,7 @@
 package org.redhat.sbomer.model;
 
 import java.time.Instant;
+import java.util.Map;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -84,6 +85,15 @@ public class BaseSBOM extends PanacheEntityBase {
     @CycloneDxBom
     private JsonNode sbom;
 
+    /**
+     * {@link org.redhat.sbomer.utils.EnrichmentFingerprint}s of the components of the SBOM enriched so far, keyed by
+     * purl. Kept next to the SBOM, and not in it, so that they are not published.
+     */
+    @Type(type = JsonTypes.JSON_BIN)
+    @Column(name = "enrichment_fingerprints", columnDefinition = JsonTypes.JSON_BIN)
+    @JsonIgnore
+    private Map<String, String> enrichmentFingerprints;
+
     @JsonIgnore
     public Bom getCycloneDxBom() {
         try {
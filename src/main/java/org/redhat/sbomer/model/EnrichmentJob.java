@@ -0,0 +1,121 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.model;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.annotations.DynamicUpdate;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Tracks a single, asynchronous enrichment of a {@link BaseSBOM}.
+ */
+@DynamicUpdate
+@Getter
+@Setter
+@EqualsAndHashCode(callSuper = true)
+@Entity
+@ToString
+@Table(name = "enrichment_job", indexes = { @Index(name = "idx_enrichmentjob_buildid", columnList = "build_id") })
+public class EnrichmentJob extends PanacheEntityBase {
+
+    public enum Status {
+        QUEUED, RUNNING, FINISHED, FAILED;
+
+        public boolean isFinal() {
+            return this == FINISHED || this == FAILED;
+        }
+    }
+
+    /**
+     * Steps of a running enrichment, in the order in which they are run.
+     */
+    public enum Stage {
+        READING, RESOLVING, ENRICHING, STORING
+    }
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "build_id", nullable = false, updatable = false)
+    @NotBlank(message = "Build identifier missing")
+    private String buildId;
+
+    @Column(name = "sbom_spec", updatable = false)
+    private String sbomSpec;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    @NotNull
+    private Status status;
+
+    /**
+     * Step of the enrichment currently run, set while the job is {@link Status#RUNNING}.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage")
+    private Stage stage;
+
+    @Column(name = "reason", length = 2048)
+    private String reason;
+
+    @Column(name = "creation_time", nullable = false, updatable = false)
+    private Instant creationTime;
+
+    @Column(name = "start_time")
+    private Instant startTime;
+
+    @Column(name = "end_time")
+    private Instant endTime;
+
+    /**
+     * Last time the replica which queued the job reported that it still holds it. Queued or running jobs which are
+     * not reported anymore were abandoned, e.g. because the replica was restarted.
+     */
+    @Column(name = "heartbeat_time")
+    private Instant heartbeatTime;
+
+    /**
+     * Number of all components in the enriched SBOM.
+     */
+    @Column(name = "component_count")
+    private Integer componentCount;
+
+    /**
+     * Number of components with a Red Hat version, i.e. the ones which were subject of the enrichment.
+     */
+    @Column(name = "rh_component_count")
+    private Integer rhComponentCount;
+
+}
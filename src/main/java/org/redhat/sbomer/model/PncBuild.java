@@ -0,0 +1,76 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.model;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotBlank;
+
+import org.hibernate.annotations.DynamicUpdate;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Build-level information shared by all the {@link ArtifactCache} entries produced by the same PNC build. Only
+ * finished builds are stored, their information never changes.
+ */
+@DynamicUpdate
+@Getter
+@Setter
+@EqualsAndHashCode(callSuper = true)
+@Entity
+@ToString
+@Table(name = "pnc_build")
+public class PncBuild extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "id", nullable = false, updatable = false)
+    @NotBlank(message = "Build identifier missing")
+    private String id;
+
+    @Column(name = "scm_url", length = 2048)
+    private String scmUrl;
+
+    @Column(name = "scm_revision")
+    private String scmRevision;
+
+    @Column(name = "scm_tag", length = 1024)
+    private String scmTag;
+
+    @Column(name = "scm_external_url", length = 2048)
+    private String scmExternalUrl;
+
+    @Column(name = "environment_image", length = 2048)
+    private String environmentImage;
+
+    /**
+     * Last time the build was requested on its own, i.e. for a generation; {@code null} if it was only stored along
+     * with its artifacts.
+     */
+    @Column(name = "last_accessed")
+    private Instant lastAccessed;
+
+}
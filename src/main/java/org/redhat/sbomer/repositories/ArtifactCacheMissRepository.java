@@ -0,0 +1,129 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.jboss.pnc.common.concurrent.Sequence;
+import org.redhat.sbomer.model.ArtifactCacheMiss;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+
+@ApplicationScoped
+public class ArtifactCacheMissRepository implements PanacheRepositoryBase<ArtifactCacheMiss, Long> {
+
+    /**
+     * Maximum number of purls bound to a single {@code IN} query, kept well below the PostgreSQL limit of bind
+     * parameters.
+     */
+    private static final int MAX_PURLS_PER_QUERY = 10000;
+
+    private static final String MISS_COLUMNS = "id, purl, creation_time, expiration_time";
+
+    private static final String UPSERT_MISS_POSTGRESQL = "INSERT INTO artifact_cache_miss (" + MISS_COLUMNS
+            + ") VALUES (?, ?, ?, ?) ON CONFLICT (purl) DO UPDATE SET "
+            + "creation_time = EXCLUDED.creation_time, expiration_time = EXCLUDED.expiration_time";
+
+    // Used by the other databases (H2 in tests)
+    private static final String UPSERT_MISS_MERGE = "MERGE INTO artifact_cache_miss (" + MISS_COLUMNS
+            + ") KEY (purl) VALUES (?, ?, ?, ?)";
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    /**
+     * Returns the provided purls which have a negative entry not expired yet.
+     *
+     * @param purls
+     * @return
+     */
+    @Transactional
+    public Set<String> getValidMisses(Collection<String> purls) {
+        List<String> all = new ArrayList<>(purls);
+        Set<String> result = new HashSet<>();
+        Instant now = Instant.now();
+
+        for (int i = 0; i < all.size(); i += MAX_PURLS_PER_QUERY) {
+            List<String> chunk = all.subList(i, Math.min(i + MAX_PURLS_PER_QUERY, all.size()));
+            result.addAll(
+                    getEntityManager().createNamedQuery(ArtifactCacheMiss.FIND_VALID_BY_PURLS, String.class)
+                            .setParameter(1, chunk)
+                            .setParameter(2, now)
+                            .getResultList());
+        }
+
+        return result;
+    }
+
+    /**
+     * Stores negative entries for the provided purls, valid for the given time. Existing (expired) entries of the same
+     * purls are replaced, with upserts so that concurrent writes of the same purls do not conflict.
+     *
+     * @param purls
+     * @param ttl
+     */
+    @Transactional
+    public void saveMisses(Collection<String> purls, Duration ttl) {
+        String upsert = "postgresql".equalsIgnoreCase(dbKind) ? UPSERT_MISS_POSTGRESQL : UPSERT_MISS_MERGE;
+        Instant now = Instant.now();
+        Timestamp creationTime = Timestamp.from(now);
+        Timestamp expirationTime = Timestamp.from(now.plus(ttl));
+
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(upsert)) {
+                for (String purl : new LinkedHashSet<>(purls)) {
+                    statement.setLong(1, Sequence.nextId());
+                    statement.setString(2, purl);
+                    statement.setTimestamp(3, creationTime);
+                    statement.setTimestamp(4, expirationTime);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Removes the negative entry of the provided purl, or all of them if no purl is provided.
+     *
+     * @param purl
+     * @return number of removed entries
+     */
+    @Transactional
+    public long deleteMisses(String purl) {
+        if (purl == null) {
+            return deleteAll();
+        }
+        return delete("purl", purl);
+    }
+
+}
@@ -17,24 +17,436 @@
  */
 package org.redhat.sbomer.repositories;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.transaction.Transactional;
+import javax.transaction.Transactional.TxType;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.jboss.pnc.common.concurrent.Sequence;
+import org.redhat.sbomer.dto.ArtifactInfo;
 import org.redhat.sbomer.model.ArtifactCache;
+import org.redhat.sbomer.model.PncBuild;
+import org.redhat.sbomer.utils.PurlUtils;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 
 @ApplicationScoped
 public class ArtifactCacheRepository implements PanacheRepositoryBase<ArtifactCache, Long> {
 
+    /**
+     * Maximum number of purls bound to a single {@code IN} query, kept well below the PostgreSQL limit of bind
+     * parameters.
+     */
+    private static final int MAX_PURLS_PER_QUERY = 10000;
+
+    private static final String BUILD_COLUMNS = "id, scm_url, scm_revision, scm_tag, scm_external_url, "
+            + "environment_image";
+
+    private static final String ARTIFACT_COLUMNS = "id, purl, identifier, md5, sha1, sha256, public_url, origin_url, "
+            + "build_system, build_id, fetched_at, last_accessed, purl_hash";
+
+    // Finished builds never change, stored builds are kept as they are
+    private static final String UPSERT_BUILD_POSTGRESQL = "INSERT INTO pnc_build (" + BUILD_COLUMNS
+            + ") VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (id) DO NOTHING";
+
+    private static final String UPSERT_ARTIFACT_POSTGRESQL = "INSERT INTO artifact_cache (" + ARTIFACT_COLUMNS
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (purl_hash, purl) DO UPDATE SET "
+            + "identifier = EXCLUDED.identifier, md5 = EXCLUDED.md5, sha1 = EXCLUDED.sha1, sha256 = EXCLUDED.sha256, "
+            + "public_url = EXCLUDED.public_url, origin_url = EXCLUDED.origin_url, "
+            + "build_system = EXCLUDED.build_system, build_id = EXCLUDED.build_id, fetched_at = EXCLUDED.fetched_at";
+
+    private static final String INSERT_ARTIFACT_IF_ABSENT_POSTGRESQL = "INSERT INTO artifact_cache ("
+            + ARTIFACT_COLUMNS
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (purl_hash, purl) DO NOTHING";
+
+    // Used by the other databases (H2 in tests), with the same semantics as the PostgreSQL statements
+    private static final String INSERT_BUILD_IF_ABSENT_MERGE = "MERGE INTO pnc_build b USING (SELECT "
+            + "CAST(? AS VARCHAR) id, CAST(? AS VARCHAR) scm_url, CAST(? AS VARCHAR) scm_revision, "
+            + "CAST(? AS VARCHAR) scm_tag, CAST(? AS VARCHAR) scm_external_url, CAST(? AS VARCHAR) environment_image"
+            + ") s ON (b.id = s.id) WHEN NOT MATCHED THEN INSERT (" + BUILD_COLUMNS + ") VALUES (s.id, s.scm_url, "
+            + "s.scm_revision, s.scm_tag, s.scm_external_url, s.environment_image)";
+
+    private static final String MERGE_ARTIFACT_SOURCE = "MERGE INTO artifact_cache a USING (SELECT "
+            + "CAST(? AS BIGINT) id, CAST(? AS VARCHAR) purl, CAST(? AS VARCHAR) identifier, CAST(? AS VARCHAR) md5, "
+            + "CAST(? AS VARCHAR) sha1, CAST(? AS VARCHAR) sha256, CAST(? AS VARCHAR) public_url, "
+            + "CAST(? AS VARCHAR) origin_url, CAST(? AS VARCHAR) build_system, CAST(? AS VARCHAR) build_id, "
+            + "CAST(? AS TIMESTAMP) fetched_at, CAST(? AS TIMESTAMP) last_accessed, CAST(? AS BIGINT) purl_hash"
+            + ") s ON (a.purl_hash = s.purl_hash AND a.purl = s.purl) ";
+
+    private static final String MERGE_ARTIFACT_INSERT = "WHEN NOT MATCHED THEN INSERT (" + ARTIFACT_COLUMNS
+            + ") VALUES (s.id, s.purl, s.identifier, s.md5, s.sha1, s.sha256, s.public_url, s.origin_url, "
+            + "s.build_system, s.build_id, s.fetched_at, s.last_accessed, s.purl_hash)";
+
+    private static final String UPSERT_ARTIFACT_MERGE = MERGE_ARTIFACT_SOURCE + "WHEN MATCHED THEN UPDATE SET "
+            + "identifier = s.identifier, md5 = s.md5, sha1 = s.sha1, sha256 = s.sha256, public_url = s.public_url, "
+            + "origin_url = s.origin_url, build_system = s.build_system, build_id = s.build_id, "
+            + "fetched_at = s.fetched_at " + MERGE_ARTIFACT_INSERT;
+
+    private static final String INSERT_ARTIFACT_IF_ABSENT_MERGE = MERGE_ARTIFACT_SOURCE + MERGE_ARTIFACT_INSERT;
+
+    private static final String SELECT_ARTIFACTS = "SELECT a.purl, a.identifier, a.md5, a.sha1, a.sha256, "
+            + "a.public_url, a.origin_url, a.build_system, b.id, b.scm_url, b.scm_revision, b.scm_tag, "
+            + "b.scm_external_url, b.environment_image, a.id "
+            + "FROM artifact_cache a LEFT JOIN pnc_build b ON a.build_id = b.id";
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    /**
+     * Key of the PostgreSQL advisory lock held by the replica evicting artifacts.
+     */
+    public static final long EVICTION_LOCK = 0x53424f4d45520001L;
+
+    /**
+     * Key of the PostgreSQL advisory lock held by the replica writing the artifact cache snapshot.
+     */
+    public static final long SNAPSHOT_LOCK = 0x53424f4d45520002L;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
     public ArtifactCache getArtifactCache(String purl) {
-        return find("#" + ArtifactCache.FIND_BY_PURL, purl).singleResult();
+        String canonicalPurl = PurlUtils.canonicalize(purl);
+        return find("#" + ArtifactCache.FIND_BY_PURL, PurlUtils.hash(canonicalPurl), canonicalPurl).singleResult();
     }
 
+    /**
+     * Finds all cached artifacts for the provided purls, which are canonicalized first (see {@link PurlUtils}). Purls
+     * which are not cached are not present in the result.
+     *
+     * @param purls
+     * @return
+     */
+    @Transactional
+    public List<ArtifactCache> getArtifactCaches(Collection<String> purls) {
+        Set<String> canonicalPurls = new HashSet<>(PurlUtils.canonicalize(purls).values());
+        List<Long> hashes = hashes(canonicalPurls);
+        List<ArtifactCache> result = new ArrayList<>(hashes.size());
+
+        for (int i = 0; i < hashes.size(); i += MAX_PURLS_PER_QUERY) {
+            List<Long> chunk = hashes.subList(i, Math.min(i + MAX_PURLS_PER_QUERY, hashes.size()));
+            for (ArtifactCache artifactCache : find("#" + ArtifactCache.FIND_BY_PURLS, chunk).<ArtifactCache> list()) {
+                // Different purls can have the same hash
+                if (canonicalPurls.contains(artifactCache.getPurl())) {
+                    result.add(artifactCache);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds all cached artifacts produced by the provided build.
+     *
+     * @param buildId
+     * @return
+     */
+    @Transactional
+    public List<ArtifactCache> getArtifactCachesOfBuild(String buildId) {
+        return find("#" + ArtifactCache.FIND_BY_BUILD_ID, buildId).list();
+    }
+
+    /**
+     * Stores the artifact, replacing the one already stored with the same purl.
+     *
+     * @param artifactCache
+     * @return the stored artifact
+     */
     @Transactional
     public ArtifactCache saveArtifactCache(ArtifactCache artifactCache) {
-        persistAndFlush(artifactCache);
-        return artifactCache;
+        return saveArtifactCaches(List.of(artifactCache), true).get(0);
+    }
+
+    /**
+     * Stores the artifacts along with their builds, with upserts so that concurrent writes of the same purls do not
+     * fail. Builds already stored are kept as they are.
+     *
+     * @param artifactCaches
+     * @param overwrite whether artifacts already stored with the same purl are replaced, or kept as they are
+     * @return the stored artifacts
+     */
+    @Transactional
+    public List<ArtifactCache> saveArtifactCaches(Collection<ArtifactCache> artifactCaches, boolean overwrite) {
+        upsert(artifactCaches, overwrite);
+        return getArtifactCaches(artifactCaches.stream().map(ArtifactCache::getPurl).collect(Collectors.toList()));
+    }
+
+    /**
+     * Inserts or updates (by purl) the provided artifacts, along with their builds, with batched JDBC statements. No
+     * entities are managed, the ids of new artifacts are generated.
+     *
+     * @param artifacts
+     */
+    @Transactional
+    public void upsertArtifactInfos(Collection<ArtifactInfo> artifacts) {
+        List<ArtifactCache> artifactCaches = new ArrayList<>(artifacts.size());
+        for (ArtifactInfo info : artifacts) {
+            artifactCaches.add(ArtifactCache.of(info.getPurl(), info));
+        }
+
+        upsert(artifactCaches, true);
+    }
+
+    private void upsert(Collection<ArtifactCache> artifactCaches, boolean overwrite) {
+        boolean postgresql = "postgresql".equalsIgnoreCase(dbKind);
+        String upsertBuild = postgresql ? UPSERT_BUILD_POSTGRESQL : INSERT_BUILD_IF_ABSENT_MERGE;
+        String upsertArtifact;
+        if (postgresql) {
+            upsertArtifact = overwrite ? UPSERT_ARTIFACT_POSTGRESQL : INSERT_ARTIFACT_IF_ABSENT_POSTGRESQL;
+        } else {
+            upsertArtifact = overwrite ? UPSERT_ARTIFACT_MERGE : INSERT_ARTIFACT_IF_ABSENT_MERGE;
+        }
+
+        Map<String, PncBuild> builds = new LinkedHashMap<>();
+        for (ArtifactCache artifactCache : artifactCaches) {
+            if (artifactCache.getBuild() != null) {
+                builds.put(artifactCache.getBuild().getId(), artifactCache.getBuild());
+            }
+        }
+
+        Timestamp now = Timestamp.from(Instant.now());
+
+        // The statements bypass the persistence context: pending changes are written first, and the entities it
+        // manages are detached afterwards so that they are read again, with the upserted values
+        getEntityManager().flush();
+
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(upsertBuild)) {
+                for (PncBuild build : builds.values()) {
+                    statement.setString(1, build.getId());
+                    statement.setString(2, build.getScmUrl());
+                    statement.setString(3, build.getScmRevision());
+                    statement.setString(4, build.getScmTag());
+                    statement.setString(5, build.getScmExternalUrl());
+                    statement.setString(6, build.getEnvironmentImage());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(upsertArtifact)) {
+                for (ArtifactCache artifactCache : artifactCaches) {
+                    statement.setLong(1, artifactCache.getId() != null ? artifactCache.getId() : Sequence.nextId());
+                    statement.setString(2, artifactCache.getPurl());
+                    statement.setString(3, artifactCache.getIdentifier());
+                    statement.setString(4, artifactCache.getMd5());
+                    statement.setString(5, artifactCache.getSha1());
+                    statement.setString(6, artifactCache.getSha256());
+                    statement.setString(7, artifactCache.getPublicUrl());
+                    statement.setString(8, artifactCache.getOriginUrl());
+                    statement.setString(9, artifactCache.getBuildSystem());
+                    statement.setString(10, artifactCache.getBuild() != null ? artifactCache.getBuild().getId() : null);
+                    statement.setTimestamp(11, now);
+                    statement.setTimestamp(12, now);
+                    statement.setLong(13, artifactCache.getPurlHash());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+
+        getEntityManager().clear();
+    }
+
+    /**
+     * Sets the last access time of the provided purls.
+     *
+     * @param purls
+     * @param lastAccessed
+     * @return number of updated artifacts
+     */
+    @Transactional
+    public int updateLastAccessed(Collection<String> purls, Instant lastAccessed) {
+        return updateInChunks("lastAccessed", purls, lastAccessed);
+    }
+
+    /**
+     * Sets the time the provided purls were last fetched from PNC.
+     *
+     * @param purls
+     * @param fetchedAt
+     * @return number of updated artifacts
+     */
+    @Transactional
+    public int updateFetchedAt(Collection<String> purls, Instant fetchedAt) {
+        return updateInChunks("fetchedAt", purls, fetchedAt);
+    }
+
+    private int updateInChunks(String field, Collection<String> purls, Instant value) {
+        List<String> all = new ArrayList<>(new HashSet<>(PurlUtils.canonicalize(purls).values()));
+        int updated = 0;
+
+        for (int i = 0; i < all.size(); i += MAX_PURLS_PER_QUERY) {
+            List<String> chunk = all.subList(i, Math.min(i + MAX_PURLS_PER_QUERY, all.size()));
+            updated += update(field + " = ?1 WHERE purlHash IN ?2 AND purl IN ?3", value, hashes(chunk), chunk);
+        }
+
+        return updated;
+    }
+
+    /**
+     * Finds the purls of the artifacts accessed since {@code accessedSince} but fetched before {@code fetchedBefore},
+     * the ones fetched the longest ago first.
+     *
+     * @param accessedSince
+     * @param fetchedBefore
+     * @param limit
+     * @return
+     */
+    @Transactional
+    public List<String> getStalePurls(Instant accessedSince, Instant fetchedBefore, int limit) {
+        return getEntityManager().createNamedQuery(ArtifactCache.FIND_STALE_PURLS, String.class)
+                .setParameter(1, accessedSince)
+                .setParameter(2, fetchedBefore)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Takes the PostgreSQL advisory lock with the provided key until the end of the current transaction, unless
+     * another transaction holds it. There is no lock on the other databases.
+     *
+     * @param key
+     * @return whether the lock was taken (always on the other databases)
+     */
+    @Transactional(TxType.MANDATORY)
+    public boolean tryAdvisoryLock(long key) {
+        if (!"postgresql".equalsIgnoreCase(dbKind)) {
+            return true;
+        }
+
+        return Boolean.TRUE.equals(
+                getEntityManager().createNativeQuery("SELECT pg_try_advisory_xact_lock(?1)")
+                        .setParameter(1, key)
+                        .getSingleResult());
+    }
+
+    /**
+     * Finds the purls of the artifacts fetched (or imported) since the provided time.
+     *
+     * @param since
+     * @return
+     */
+    @Transactional
+    public List<String> getPurlsFetchedSince(Instant since) {
+        return getEntityManager().createNamedQuery(ArtifactCache.FIND_PURLS_FETCHED_SINCE, String.class)
+                .setParameter(1, since)
+                .getResultList();
+    }
+
+    /**
+     * Deletes a batch of the least recently accessed artifacts, if the cache holds more than {@code maxRows}
+     * artifacts, along with the builds not referenced by any artifact anymore (unless they were requested on their own
+     * since {@code buildsAccessedBefore}). On PostgreSQL, the replicas evict one at a time (with a transaction-level
+     * advisory lock) and the excess is counted within the transaction, so that concurrent evictions do not delete
+     * more than the excess.
+     *
+     * @param maxRows maximum number of cached artifacts
+     * @param batchSize maximum number of artifacts to delete
+     * @param buildsAccessedBefore
+     * @return the purls of the deleted artifacts, empty if there is no excess or another replica is evicting
+     */
+    @Transactional
+    public List<String> deleteColdest(long maxRows, int batchSize, Instant buildsAccessedBefore) {
+        if (!tryAdvisoryLock(EVICTION_LOCK)) {
+            return List.of();
+        }
+
+        long excess = count() - maxRows;
+        if (excess <= 0) {
+            return List.of();
+        }
+
+        List<String> purls = getEntityManager().createNamedQuery(ArtifactCache.FIND_COLDEST_PURLS, String.class)
+                .setMaxResults((int) Math.min(batchSize, excess))
+                .getResultList();
+
+        if (!purls.isEmpty()) {
+            delete("purlHash IN ?1 AND purl IN ?2", hashes(purls), purls);
+            getEntityManager()
+                    .createQuery(
+                            "DELETE FROM PncBuild b WHERE (b.lastAccessed IS NULL OR b.lastAccessed < ?1) "
+                                    + "AND NOT EXISTS (SELECT 1 FROM ArtifactCache a WHERE a.build = b)")
+                    .setParameter(1, buildsAccessedBefore)
+                    .executeUpdate();
+        }
+
+        return purls;
+    }
+
+    private static List<Long> hashes(Collection<String> canonicalPurls) {
+        return canonicalPurls.stream().map(PurlUtils::hash).distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * Reads all the cached artifacts, one by one, without loading them all in memory.
+     *
+     * @param consumer
+     */
+    @Transactional
+    public void streamArtifactInfos(Consumer<ArtifactInfo> consumer) {
+        stream(SELECT_ARTIFACTS + " ORDER BY a.id", 0, (id, info) -> consumer.accept(info));
+    }
+
+    /**
+     * Reads the most recently accessed artifacts, one by one, without loading them all in memory.
+     *
+     * @param limit maximum number of artifacts to read
+     * @param consumer receives the id and the information of every artifact
+     */
+    @Transactional
+    public void streamMostRecentlyAccessed(int limit, BiConsumer<Long, ArtifactInfo> consumer) {
+        stream(SELECT_ARTIFACTS + " ORDER BY a.last_accessed DESC", limit, consumer);
+    }
+
+    // A limit of 0 reads all the artifacts
+    private void stream(String query, int limit, BiConsumer<Long, ArtifactInfo> consumer) {
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                // Within a transaction, the PostgreSQL driver fetches the rows with a cursor
+                statement.setFetchSize(EXPORT_FETCH_SIZE);
+                statement.setMaxRows(limit);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(
+                                resultSet.getLong(15),
+                                ArtifactInfo.builder()
+                                        .purl(resultSet.getString(1))
+                                        .identifier(resultSet.getString(2))
+                                        .md5(resultSet.getString(3))
+                                        .sha1(resultSet.getString(4))
+                                        .sha256(resultSet.getString(5))
+                                        .publicUrl(resultSet.getString(6))
+                                        .originUrl(resultSet.getString(7))
+                                        .buildSystem(resultSet.getString(8))
+                                        .buildId(resultSet.getString(9))
+                                        .scmUrl(resultSet.getString(10))
+                                        .scmRevision(resultSet.getString(11))
+                                        .scmTag(resultSet.getString(12))
+                                        .scmExternalUrl(resultSet.getString(13))
+                                        .environmentImage(resultSet.getString(14))
+                                        .build());
+                    }
+                }
+            }
+        });
     }
 
-}
\ No newline at end of file
+}
@@ -17,9 +17,22 @@
  */
 package org.redhat.sbomer.repositories;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
 import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.NoResultException;
 import javax.transaction.Transactional;
 
+import org.hibernate.Session;
 import org.redhat.sbomer.model.BaseSBOM;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
@@ -37,4 +50,85 @@ public class BaseSBOMRepository implements PanacheRepositoryBase<BaseSBOM, Long>
         return baseSbom;
     }
 
-}
\ No newline at end of file
+    /**
+     * Reads the SBOM of the provided build as a character stream, without materializing the {@link BaseSBOM} entity.
+     * The column is read as the raw (UTF-8) bytes received from the database and decoded while it is consumed, the
+     * driver does not build a {@link String} of the whole document, as it does for {@code getString} and
+     * {@code getCharacterStream}.
+     *
+     * @param buildId
+     * @param sbomReader consumer of the SBOM content, the reader is closed once it returns
+     * @return the value returned by the sbomReader
+     * @throws NoResultException if there is no base SBOM for the build
+     */
+    @Transactional
+    public <T> T readSbom(String buildId, SbomReader<T> sbomReader) {
+        return getEntityManager().unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection
+                    .prepareStatement("SELECT sbom FROM base_sbom WHERE build_id = ?")) {
+                statement.setString(1, buildId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new NoResultException("Base SBOM for build id " + buildId + " not found.");
+                    }
+
+                    InputStream sbom = resultSet.getBinaryStream(1);
+                    if (sbom == null) {
+                        throw new NoResultException("Base SBOM for build id " + buildId + " has no content.");
+                    }
+
+                    try (Reader reader = new InputStreamReader(sbom, StandardCharsets.UTF_8)) {
+                        return sbomReader.read(reader);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the enrichment fingerprints of the SBOM of the provided build, without reading the SBOM itself.
+     *
+     * @param buildId
+     * @return fingerprints keyed by purl, empty if the SBOM was never enriched
+     * @throws NoResultException if there is no base SBOM for the build
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> getEnrichmentFingerprints(String buildId) {
+        Map<String, String> fingerprints = (Map<String, String>) getEntityManager()
+                .createQuery("SELECT enrichmentFingerprints FROM BaseSBOM WHERE buildId = ?1")
+                .setParameter(1, buildId)
+                .getSingleResult();
+        return fingerprints != null ? new HashMap<>(fingerprints) : new HashMap<>();
+    }
+
+    /**
+     * Replaces the SBOM of the provided build with the content of the reader, which is streamed to the database, along
+     * with its enrichment fingerprints.
+     *
+     * @param buildId
+     * @param sbom SBOM in the CycloneDX JSON format
+     * @param enrichmentFingerprints
+     */
+    @Transactional
+    public void updateSbom(String buildId, Reader sbom, Map<String, String> enrichmentFingerprints) {
+        update("enrichmentFingerprints = ?1 where buildId = ?2", enrichmentFingerprints, buildId);
+
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection
+                    .prepareStatement("UPDATE base_sbom SET sbom = CAST(? AS jsonb) WHERE build_id = ?")) {
+                statement.setCharacterStream(1, sbom);
+                statement.setString(2, buildId);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+    @FunctionalInterface
+    public interface SbomReader<T> {
+        T read(Reader reader) throws IOException;
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.repositories;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.redhat.sbomer.model.EnrichmentJob;
+import org.redhat.sbomer.model.EnrichmentJob.Stage;
+import org.redhat.sbomer.model.EnrichmentJob.Status;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+
+@ApplicationScoped
+public class EnrichmentJobRepository implements PanacheRepositoryBase<EnrichmentJob, Long> {
+
+    @Transactional
+    public EnrichmentJob saveJob(EnrichmentJob job) {
+        persistAndFlush(job);
+        return job;
+    }
+
+    /**
+     * Marks the job as running, unless it was already finished or failed, e.g. as abandoned.
+     *
+     * @param id
+     * @return true if the job was marked as running
+     */
+    @Transactional
+    public boolean markRunning(Long id) {
+        EnrichmentJob job = findById(id);
+        if (job.getStatus().isFinal()) {
+            return false;
+        }
+        job.setStatus(Status.RUNNING);
+        job.setStartTime(Instant.now());
+        job.setHeartbeatTime(job.getStartTime());
+        return true;
+    }
+
+    @Transactional
+    public void markStage(Long id, Stage stage) {
+        EnrichmentJob job = findById(id);
+        job.setStage(stage);
+        job.setHeartbeatTime(Instant.now());
+    }
+
+    @Transactional
+    public void markFinished(Long id, int componentCount, int rhComponentCount) {
+        EnrichmentJob job = findById(id);
+        job.setStatus(Status.FINISHED);
+        job.setStage(null);
+        job.setEndTime(Instant.now());
+        job.setComponentCount(componentCount);
+        job.setRhComponentCount(rhComponentCount);
+    }
+
+    @Transactional
+    public void markFailed(Long id, String reason) {
+        EnrichmentJob job = findById(id);
+        job.setStatus(Status.FAILED);
+        job.setEndTime(Instant.now());
+        job.setReason(reason);
+    }
+
+    /**
+     * Records that the jobs are still held by the replica.
+     *
+     * @param ids
+     * @param heartbeatTime
+     * @return number of updated jobs
+     */
+    @Transactional
+    public int heartbeat(Collection<Long> ids, Instant heartbeatTime) {
+        return update(
+                "heartbeatTime = ?1 where id in ?2 and status in ?3",
+                heartbeatTime,
+                ids,
+                List.of(Status.QUEUED, Status.RUNNING));
+    }
+
+    /**
+     * Fails the queued and running jobs which were not reported by any replica since the provided time.
+     *
+     * @param heartbeatBefore
+     * @param reason
+     * @return number of failed jobs
+     */
+    @Transactional
+    public int failAbandoned(Instant heartbeatBefore, String reason) {
+        Instant now = Instant.now();
+        return update(
+                "status = ?1, endTime = ?2, reason = ?3 where status in ?4 and coalesce(heartbeatTime, creationTime) < ?5",
+                Status.FAILED,
+                now,
+                reason,
+                List.of(Status.QUEUED, Status.RUNNING),
+                heartbeatBefore);
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.repositories;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.transaction.Transactional;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.redhat.sbomer.model.PncBuild;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+
+@ApplicationScoped
+public class PncBuildRepository implements PanacheRepositoryBase<PncBuild, String> {
+
+    private static final String UPSERT_BUILD_POSTGRESQL = "INSERT INTO pnc_build (id, scm_url, scm_revision, "
+            + "scm_tag, scm_external_url, environment_image, last_accessed) VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (id) DO UPDATE SET last_accessed = EXCLUDED.last_accessed";
+
+    private static final String UPSERT_BUILD_MERGE = "MERGE INTO pnc_build (id, scm_url, scm_revision, scm_tag, "
+            + "scm_external_url, environment_image, last_accessed) KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    /**
+     * Finds the stored build and records the access.
+     *
+     * @param id
+     * @param accessed
+     * @return the build, or {@code null} if it is not stored
+     */
+    @Transactional
+    public PncBuild accessBuild(String id, Instant accessed) {
+        PncBuild build = findById(id);
+        if (build != null) {
+            build.setLastAccessed(accessed);
+        }
+        return build;
+    }
+
+    /**
+     * Stores the build, concurrent writes of the same build do not fail.
+     *
+     * @param build
+     */
+    @Transactional
+    public void saveBuild(PncBuild build) {
+        String upsert = "postgresql".equalsIgnoreCase(dbKind) ? UPSERT_BUILD_POSTGRESQL : UPSERT_BUILD_MERGE;
+
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(upsert)) {
+                statement.setString(1, build.getId());
+                statement.setString(2, build.getScmUrl());
+                statement.setString(3, build.getScmRevision());
+                statement.setString(4, build.getScmTag());
+                statement.setString(5, build.getScmExternalUrl());
+                statement.setString(6, build.getEnvironmentImage());
+                statement.setTimestamp(
+                        7,
+                        build.getLastAccessed() != null ? Timestamp.from(build.getLastAccessed()) : null);
+                statement.executeUpdate();
+            }
+        });
+    }
+
+}
@@ -15,30 +15,20 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.redhat.sbomer.validation;
+package org.redhat.sbomer.rest;
 
-import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.util.Collections;
-import java.util.List;
 
-import javax.validation.Constraint;
-import javax.validation.Payload;
+import javax.ws.rs.NameBinding;
 
-@Target({ ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER, ElementType.ANNOTATION_TYPE })
+/**
+ * Marks administrative endpoints, which can only be called with the admin token, see {@link AdminOperationFilter}.
+ */
+@NameBinding
+@Target({ ElementType.TYPE, ElementType.METHOD })
 @Retention(RetentionPolicy.RUNTIME)
-@Constraint(validatedBy = ArtifactJsonPropertyValidator.class)
-@Documented
-public @interface ArtifactJsonProperty {
-    String message() default "not a valid Json property object: {errors}";
-
-    List<String> errors = Collections.emptyList();
-
-    Class<?>[] groups() default {};
-
-    Class<? extends Payload>[] payload() default {};
-
+public @interface AdminOperation {
 }
@@ -0,0 +1,83 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.Provider;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Guards the endpoints annotated with {@link AdminOperation}: requests have to provide the token configured in
+ * {@code sbomer.api.admin-token} as a bearer token. If no token is configured, administrative endpoints are disabled.
+ */
+@Provider
+@AdminOperation
+@Priority(Priorities.AUTHENTICATION)
+@Slf4j
+public class AdminOperationFilter implements ContainerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    @ConfigProperty(name = "sbomer.api.admin-token")
+    Optional<String> adminToken;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (adminToken.isEmpty() || adminToken.get().isBlank()) {
+            abort(requestContext, Status.FORBIDDEN, "Administrative operations are disabled");
+            return;
+        }
+
+        String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.startsWith(BEARER) || !MessageDigest.isEqual(
+                authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8),
+                adminToken.get().getBytes(StandardCharsets.UTF_8))) {
+            log.warn(
+                    "Rejected unauthorized administrative request: {} {}",
+                    requestContext.getMethod(),
+                    requestContext.getUriInfo().getPath());
+            abort(requestContext, Status.UNAUTHORIZED, "Missing or invalid admin token");
+        }
+    }
+
+    private void abort(ContainerRequestContext requestContext, Status status, String message) {
+        Response.ResponseBuilder response = Response.status(status)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(Map.of("message", message));
+        if (status == Status.UNAUTHORIZED) {
+            response.header(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+        }
+        requestContext.abortWith(response.build());
+    }
+
+}
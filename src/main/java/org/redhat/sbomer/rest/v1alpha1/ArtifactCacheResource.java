@@ -0,0 +1,151 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.rest.v1alpha1;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.media.Content;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.rest.AdminOperation;
+import org.redhat.sbomer.service.ArtifactCacheBulkService;
+import org.redhat.sbomer.service.ArtifactResolutionService;
+import org.redhat.sbomer.service.SBOMService;
+
+@Path("/api/v1alpha1/artifacts")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@ApplicationScoped
+@Tag(name = "Artifacts", description = "Endpoints related to the artifact cache, version v1")
+public class ArtifactCacheResource {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    @Inject
+    ArtifactResolutionService artifactResolutionService;
+
+    @Inject
+    SBOMService sbomService;
+
+    @Inject
+    ArtifactCacheBulkService artifactCacheBulkService;
+
+    @GET
+    @Path("/builds/{buildId}")
+    @Operation(
+            summary = "List cached artifacts of a PNC build",
+            description = "List the cached artifacts produced by a particular PNC build")
+    @Parameter(name = "buildId", description = "PNC build identifier", example = "ARYT3LBXDVYAC")
+    @APIResponses({ @APIResponse(
+            responseCode = "200",
+            description = "List of the cached artifacts produced by the build, empty if there are none.",
+            content = @Content(mediaType = MediaType.APPLICATION_JSON)) })
+    public List<ArtifactCache> listOfBuild(@PathParam("buildId") String buildId) {
+        return sbomService.listArtifactCacheOfBuild(buildId);
+    }
+
+    /**
+     * Purges the negative entries of the artifact cache, so that the purls are looked up in PNC again. This is an
+     * administrative endpoint, see {@link AdminOperation}.
+     *
+     * @param purl
+     * @return
+     */
+    @DELETE
+    @Path("/misses")
+    @AdminOperation
+    @Operation(
+            summary = "Purge artifacts not found in PNC",
+            description = "Purge the remembered artifacts which couldn't be found in PNC, either all of them or the one with the provided purl. Requires the admin token.")
+    @Parameter(
+            name = "purl",
+            description = "Purl of the artifact to purge, all artifacts are purged if not provided",
+            example = "pkg:maven/commons-io/commons-io@2.6.0.redhat-00001?type=jar")
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "Number of purged artifacts.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+            @APIResponse(responseCode = "401", description = "Missing or invalid admin token."),
+            @APIResponse(responseCode = "403", description = "Administrative operations are disabled.") })
+    public Response purgeMisses(@QueryParam("purl") String purl) {
+        long purged = artifactResolutionService.purgeMisses(purl);
+        return Response.ok(Map.of("purged", purged)).build();
+    }
+
+    /**
+     * Imports artifacts in the artifact cache, provided as NDJSON records of artifact information. This is an
+     * administrative endpoint, see {@link AdminOperation}.
+     *
+     * @param input
+     * @return
+     */
+    @POST
+    @Path("/import")
+    @Consumes(NDJSON)
+    @AdminOperation
+    @Operation(
+            summary = "Import artifacts",
+            description = "Import artifacts in the artifact cache, provided as newline-delimited JSON records. Artifacts with the same purl are replaced, records which cannot be parsed or without a purl are rejected. Requires the admin token.")
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "Number of imported and rejected records.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+            @APIResponse(responseCode = "401", description = "Missing or invalid admin token."),
+            @APIResponse(responseCode = "403", description = "Administrative operations are disabled.") })
+    public Response importArtifacts(InputStream input) {
+        return Response.ok(artifactCacheBulkService.importArtifacts(input)).build();
+    }
+
+    @GET
+    @Path("/export")
+    @Produces(NDJSON)
+    @Operation(
+            summary = "Export artifacts",
+            description = "Export the whole artifact cache as newline-delimited JSON records.")
+    @APIResponses({ @APIResponse(
+            responseCode = "200",
+            description = "Stream of the cached artifacts.",
+            content = @Content(mediaType = NDJSON)) })
+    public Response exportArtifacts() {
+        StreamingOutput stream = artifactCacheBulkService::exportArtifacts;
+        return Response.ok(stream).build();
+    }
+
+}
@@ -17,6 +17,8 @@
  */
 package org.redhat.sbomer.rest.v1alpha1;
 
+import java.net.URI;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.validation.Valid;
@@ -41,7 +43,10 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.jboss.pnc.rest.api.parameters.PaginationParameters;
 import org.redhat.sbomer.dto.BaseSBOM;
+import org.redhat.sbomer.dto.EnrichmentJob;
 import org.redhat.sbomer.dto.response.Page;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.service.EnrichmentJobService;
 import org.redhat.sbomer.service.SBOMService;
 import org.redhat.sbomer.validation.exceptions.ValidationException;
 
@@ -57,6 +62,9 @@ public class SBOMResource {
     @Inject
     SBOMService sbomService;
 
+    @Inject
+    EnrichmentJobService enrichmentJobService;
+
     /**
      * Make it possible to create a {@link BaseSBOM} resource directly from the endpoint.
      *
@@ -135,18 +143,45 @@ public class SBOMResource {
     @POST
     @Operation(
             summary = "Enrich SBOM based on the PNC build",
-            description = "SBOM enrichment for a particular PNC build Id. Only sbom-spec currently available is `properties`")
+            description = "SBOM enrichment for a particular PNC build Id. Only sbom-spec currently available is `properties`. "
+                    + "With `async=true` the enrichment is scheduled as a job, its progress can be followed at the `/enrich/jobs/{id}` endpoint.")
     @Parameter(name = "buildId", description = "PNC build identifier", example = "ARYT3LBXDVYAC")
     @Path("/enrich/{buildId}")
-    @APIResponses({ @APIResponse(
-            responseCode = "201",
-            description = "Executes the enrichment of an existing SBOM for a particular PNC buildId.",
-            content = @Content(mediaType = MediaType.APPLICATION_JSON)) })
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "Executes the enrichment of an existing SBOM for a particular PNC buildId.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+            @APIResponse(
+                    responseCode = "202",
+                    description = "Schedules the enrichment of an existing SBOM for a particular PNC buildId, returns the created enrichment job.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+            @APIResponse(
+                    responseCode = "404",
+                    description = "The BaseSBOM for the particular buildID couldn't be found in the system.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+            @APIResponse(
+                    responseCode = "503",
+                    description = "The enrichment job couldn't be scheduled, because too many jobs are waiting already.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)) })
     public Response runEnrichmentOfBaseSbom(
             @PathParam("buildId") String buildId,
-            @QueryParam("sbomSpec") String sbomSpec) throws Exception {
+            @QueryParam("sbomSpec") String sbomSpec,
+            @QueryParam("async") boolean async) throws Exception {
 
         try {
+            if (async) {
+                try {
+                    EnrichmentJob job = enrichmentJobService.submit(buildId, sbomSpec);
+                    return Response.status(Response.Status.ACCEPTED)
+                            .location(URI.create("/api/v1alpha1/sboms/enrich/jobs/" + job.getId()))
+                            .entity(job)
+                            .build();
+                } catch (ApplicationException aExc) {
+                    return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(aExc.getMessage()).build();
+                }
+            }
+
             org.redhat.sbomer.dto.BaseSBOM enrichedSBOM = sbomService.runEnrichmentOfBaseSbom(buildId, sbomSpec);
             return Response.status(Response.Status.OK).entity(enrichedSBOM).build();
         } catch (NotFoundException nfe) {
@@ -158,4 +193,21 @@ public class SBOMResource {
         }
     }
 
-}
\ No newline at end of file
+    @GET
+    @Path("/enrich/jobs/{id}")
+    @Operation(summary = "Get enrichment job", description = "Get the state of a specific enrichment job")
+    @Parameter(name = "id", description = "Enrichment job identifier")
+    @APIResponses({
+            @APIResponse(
+                    responseCode = "200",
+                    description = "The enrichment job, including its status, timing and component counts.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)),
+            @APIResponse(
+                    responseCode = "404",
+                    description = "The enrichment job couldn't be found in the system.",
+                    content = @Content(mediaType = MediaType.APPLICATION_JSON)) })
+    public EnrichmentJob getEnrichmentJob(@PathParam("id") String id) {
+        return enrichmentJobService.getJob(id);
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.errors.ApplicationException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Imports and exports the artifact cache as NDJSON streams of {@link ArtifactInfo} records, one record per line.
+ * Records are imported in batches of {@code sbomer.artifact-cache.import.batch-size}, each batch in its own
+ * transaction.
+ */
+@ApplicationScoped
+@Slf4j
+public class ArtifactCacheBulkService {
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Inject
+    ArtifactInfoCache artifactInfoCache;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.import.batch-size", defaultValue = "1000")
+    int batchSize;
+
+    /**
+     * Imports the NDJSON stream of artifacts. Existing artifacts (with the same purl) are replaced, records which cannot
+     * be parsed or without a purl are rejected, without failing the import.
+     *
+     * @param input
+     * @return the number of imported and rejected records
+     */
+    public Map<String, Long> importArtifacts(InputStream input) {
+        long imported = 0;
+        long rejected = 0;
+        long lineNumber = 0;
+        List<ArtifactInfo> batch = new ArrayList<>(batchSize);
+        ObjectReader reader = objectMapper.readerFor(ArtifactInfo.class);
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                ArtifactInfo info;
+                try {
+                    info = reader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    log.debug("Rejecting the record on line {}: {}", lineNumber, e.getOriginalMessage());
+                    rejected++;
+                    continue;
+                }
+
+                if (info == null || info.getPurl() == null || info.getPurl().isBlank()) {
+                    rejected++;
+                    continue;
+                }
+
+                batch.add(info);
+                if (batch.size() >= batchSize) {
+                    imported += flush(batch);
+                }
+            }
+            imported += flush(batch);
+        } catch (IOException e) {
+            throw new ApplicationException("Unable to import the artifacts, {} were imported", imported, e);
+        } finally {
+            // Cached entries might have been replaced, even if the import failed midway
+            if (imported > 0) {
+                artifactInfoCache.invalidateAll();
+            }
+        }
+
+        log.info("Imported {} artifacts in the artifact cache, {} records rejected", imported, rejected);
+        return Map.of("imported", imported, "rejected", rejected);
+    }
+
+    /**
+     * Writes the whole artifact cache to the output as NDJSON, without loading it in memory.
+     *
+     * @param output
+     */
+    public void exportArtifacts(OutputStream output) {
+        ObjectWriter writer = objectMapper.writerFor(ArtifactInfo.class);
+        OutputStream buffered = new BufferedOutputStream(output);
+
+        artifactCacheRepository.streamArtifactInfos(info -> {
+            try {
+                buffered.write(writer.writeValueAsBytes(info));
+                buffered.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        try {
+            buffered.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int flush(List<ArtifactInfo> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        int size = batch.size();
+        artifactCacheRepository.upsertArtifactInfos(batch);
+        batch.clear();
+        return size;
+    }
+
+}
@@ -0,0 +1,270 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.utils.ArtifactCacheSnapshot;
+
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the {@link org.redhat.sbomer.model.ArtifactCache} fresh and bounded, in the background.
+ * <ul>
+ * <li>Accesses to cached artifacts are recorded in memory and written to the database periodically.</li>
+ * <li>Artifacts accessed recently ("hot") but fetched from PNC a long time ago are fetched again, before they are
+ * needed again, so that lookups of hot artifacts never wait for PNC.</li>
+ * <li>When the cache holds more artifacts than allowed, the least recently accessed ones are deleted.</li>
+ * <li>The most recently accessed artifacts are written to the {@link ArtifactCacheSnapshot} file, if configured, so
+ * that starting replicas can serve them right away.</li>
+ * </ul>
+ * The jobs run on every replica, their writes are idempotent. The eviction and the snapshot run on one replica at a
+ * time.
+ */
+@ApplicationScoped
+@Slf4j
+public class ArtifactCacheMaintenanceService {
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Inject
+    ArtifactResolutionService artifactResolutionService;
+
+    @Inject
+    ArtifactInfoCache artifactInfoCache;
+
+    /**
+     * Artifacts fetched longer ago than this are refreshed, if they are hot. Zero disables the refresh.
+     */
+    @ConfigProperty(name = "sbomer.artifact-cache.refresh.max-age", defaultValue = "168h")
+    Duration refreshMaxAge;
+
+    /**
+     * Artifacts accessed within this window are hot.
+     */
+    @ConfigProperty(name = "sbomer.artifact-cache.refresh.hot-window", defaultValue = "72h")
+    Duration hotWindow;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.refresh.batch-size", defaultValue = "500")
+    int refreshBatchSize;
+
+    /**
+     * Maximum number of cached artifacts. Zero disables the eviction.
+     */
+    @ConfigProperty(name = "sbomer.artifact-cache.eviction.max-rows", defaultValue = "1000000")
+    long maxRows;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.eviction.batch-size", defaultValue = "1000")
+    int evictionBatchSize;
+
+    /**
+     * Builds requested for generations are kept for this long after their last request, even if no cached artifact
+     * references them.
+     */
+    @ConfigProperty(name = "sbomer.pnc.build-cache.retention", defaultValue = "720h")
+    Duration buildRetention;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.snapshot.path")
+    Optional<Path> snapshotPath;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.snapshot.max-entries", defaultValue = "500000")
+    int snapshotMaxEntries;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.snapshot.interval", defaultValue = "1h")
+    Duration snapshotInterval;
+
+    private final Set<String> accessed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Records that the provided purls were looked up, the access is written to the database with a delay.
+     *
+     * @param purls
+     */
+    public void recordAccess(Collection<String> purls) {
+        accessed.addAll(purls);
+    }
+
+    @Scheduled(
+            identity = "artifact-cache-access",
+            every = "{sbomer.artifact-cache.access-flush-interval}",
+            concurrentExecution = ConcurrentExecution.SKIP)
+    public void flushAccesses() {
+        if (accessed.isEmpty()) {
+            return;
+        }
+
+        List<String> purls = new ArrayList<>(accessed);
+        accessed.removeAll(purls);
+
+        int updated = artifactCacheRepository.updateLastAccessed(purls, Instant.now());
+        log.debug("Recorded the access to {} cached artifacts", updated);
+    }
+
+    /**
+     * Fetches again from PNC the hot artifacts which were fetched too long ago, one batch per run.
+     *
+     * @return number of refreshed artifacts
+     */
+    @Scheduled(
+            identity = "artifact-cache-refresh",
+            every = "{sbomer.artifact-cache.refresh.interval}",
+            concurrentExecution = ConcurrentExecution.SKIP)
+    public int refreshStaleArtifacts() {
+        if (refreshMaxAge.isZero() || refreshMaxAge.isNegative()) {
+            return 0;
+        }
+
+        Instant now = Instant.now();
+        List<String> purls = artifactCacheRepository
+                .getStalePurls(now.minus(hotWindow), now.minus(refreshMaxAge), refreshBatchSize);
+
+        if (purls.isEmpty()) {
+            return 0;
+        }
+
+        log.info("Refreshing {} stale cached artifacts", purls.size());
+        return artifactResolutionService.refresh(purls);
+    }
+
+    /**
+     * Deletes the least recently accessed artifacts until the cache does not hold more than
+     * {@code sbomer.artifact-cache.eviction.max-rows} artifacts.
+     *
+     * @return number of deleted artifacts
+     */
+    @Scheduled(
+            identity = "artifact-cache-eviction",
+            every = "{sbomer.artifact-cache.eviction.interval}",
+            concurrentExecution = ConcurrentExecution.SKIP)
+    public long evictColdArtifacts() {
+        return evictColdArtifacts(maxRows);
+    }
+
+    /**
+     * Deletes the least recently accessed artifacts until the cache does not hold more than {@code maxRows} artifacts.
+     *
+     * @param maxRows
+     * @return number of deleted artifacts
+     */
+    public long evictColdArtifacts(long maxRows) {
+        if (maxRows <= 0) {
+            return 0;
+        }
+
+        long evicted = 0;
+
+        // Every batch counts the excess again, the artifacts evicted meanwhile by other replicas are not evicted twice
+        while (true) {
+            List<String> purls = artifactCacheRepository
+                    .deleteColdest(maxRows, evictionBatchSize, Instant.now().minus(buildRetention));
+            if (purls.isEmpty()) {
+                break;
+            }
+
+            artifactInfoCache.invalidate(purls);
+            evicted += purls.size();
+        }
+
+        if (evicted > 0) {
+            log.info("Evicted {} cold cached artifacts", evicted);
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Writes the most recently accessed artifacts to the snapshot file, replacing the previous snapshot. A single
+     * replica writes the snapshot at a time (with a PostgreSQL advisory lock), and not at all if another replica
+     * wrote it less than half an interval ago.
+     *
+     * @return number of artifacts written
+     */
+    @Scheduled(
+            identity = "artifact-cache-snapshot",
+            every = "{sbomer.artifact-cache.snapshot.interval}",
+            concurrentExecution = ConcurrentExecution.SKIP)
+    @Transactional
+    public int writeSnapshot() {
+        if (snapshotPath.isEmpty()) {
+            return 0;
+        }
+
+        if (!artifactCacheRepository.tryAdvisoryLock(ArtifactCacheRepository.SNAPSHOT_LOCK)) {
+            log.debug("Another replica is writing the artifact cache snapshot");
+            return 0;
+        }
+
+        Instant previous = snapshotCreationTime(snapshotPath.get());
+        if (previous != null && previous.isAfter(Instant.now().minus(snapshotInterval.dividedBy(2)))) {
+            log.debug("The artifact cache snapshot was written at {}, not writing it again yet", previous);
+            return 0;
+        }
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(snapshotPath.get())) {
+            artifactCacheRepository.streamMostRecentlyAccessed(snapshotMaxEntries, (id, info) -> {
+                try {
+                    writer.add(ArtifactCache.builder().id(String.valueOf(id)).purl(info.getPurl()).info(info).build());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            int written = writer.commit();
+            log.info("Wrote {} artifacts to the artifact cache snapshot {}", written, snapshotPath.get());
+            return written;
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not write the artifact cache snapshot {}", snapshotPath.get(), e);
+            return 0;
+        }
+    }
+
+    private static Instant snapshotCreationTime(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try {
+            return ArtifactCacheSnapshot.open(path).getCreationTime();
+        } catch (IOException e) {
+            log.warn("Could not read the artifact cache snapshot {}, replacing it", path, e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,437 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.utils.ArtifactCacheSnapshot;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.agroal.api.AgroalDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.runtime.StartupEvent;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded, in-process cache of the {@link ArtifactCache} entries, keyed by purl. It sits in front of the
+ * {@code artifact_cache} table, so that repeated lookups do not cost a database round trip. The cached entries and
+ * their {@link ArtifactInfo} are immutable, they are handed out as they are to all the callers.
+ *
+ * The size of the cache is bound by the (estimated) weight of the entries. On PostgreSQL, invalidations are propagated
+ * to all the replicas of the service with {@code NOTIFY}, every replica {@code LISTEN}s on a dedicated connection,
+ * opened outside of the connection pool so that it does not hold one of the pooled connections forever. Hit, miss and
+ * eviction metrics are exposed as the {@code cache.*} meters with the {@value #CACHE_NAME} cache tag.
+ *
+ * When {@code sbomer.artifact-cache.snapshot.path} is set, the {@link ArtifactCacheSnapshot} found there at startup is
+ * mapped in memory and serves the entries missing in the cache, until it is older than
+ * {@code sbomer.artifact-cache.snapshot.max-age}. The entries stored in the database since the snapshot was created,
+ * and the ones invalidated since, are not served from the snapshot.
+ */
+@ApplicationScoped
+@Slf4j
+public class ArtifactInfoCache {
+
+    public static final String CACHE_NAME = "sbomer-artifact-info";
+
+    static final String CHANNEL = "sbomer_artifact_cache";
+
+    /**
+     * Maximum size of a single notification payload, kept below the PostgreSQL limit of 8000 bytes.
+     */
+    private static final int MAX_PAYLOAD_LENGTH = 7000;
+
+    private static final String INVALIDATE_ALL = "*";
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.l1.enabled", defaultValue = "true")
+    boolean enabled;
+
+    /**
+     * Maximum total weight of the cached entries, roughly the number of characters of the cached artifact information.
+     */
+    @ConfigProperty(name = "sbomer.artifact-cache.l1.max-weight", defaultValue = "20000000")
+    long maxWeight;
+
+    @ConfigProperty(name = "quarkus.datasource.db-kind")
+    String dbKind;
+
+    @ConfigProperty(name = "quarkus.datasource.jdbc.url")
+    Optional<String> jdbcUrl;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    Optional<String> username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    Optional<String> password;
+
+    @ConfigProperty(name = "sbomer.artifact-cache.snapshot.path")
+    Optional<Path> snapshotPath;
+
+    /**
+     * Snapshots older than this are not used, the entries they miss invalidations for are not served anymore.
+     */
+    @ConfigProperty(name = "sbomer.artifact-cache.snapshot.max-age", defaultValue = "6h")
+    Duration snapshotMaxAge;
+
+    private Cache<String, ArtifactCache> cache;
+
+    private volatile ArtifactCacheSnapshot snapshot;
+
+    private final Set<String> invalidatedInSnapshot = ConcurrentHashMap.newKeySet();
+
+    private Counter snapshotHits;
+
+    private volatile Thread listener;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(enabled ? maxWeight : 0)
+                .weigher((String purl, ArtifactCache artifact) -> weigh(purl, artifact.getArtifactInfo()))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        snapshotHits = meterRegistry.counter("sbomer.artifact.cache.snapshot.hits");
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled || !isPostgreSQL() || jdbcUrl.isEmpty()) {
+            snapshotPath.filter(Files::exists).ifPresent(this::openSnapshot);
+        }
+
+        if (enabled && isPostgreSQL() && jdbcUrl.isEmpty()) {
+            log.warn("No JDBC URL configured, artifact cache invalidations of other replicas are not received");
+        } else if (enabled && isPostgreSQL()) {
+            // The snapshot is opened by the listener once it listens, so that no invalidation is missed
+            listener = new Thread(this::listen, "sbomer-artifact-cache-listener");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Thread thread = listener;
+        listener = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void openSnapshot(Path path) {
+        try {
+            ArtifactCacheSnapshot opened = ArtifactCacheSnapshot.open(path);
+            if (isExpired(opened)) {
+                log.info("Ignoring the artifact cache snapshot created at {}, too old", opened.getCreationTime());
+                return;
+            }
+
+            // The invalidations sent before this replica started were missed, the artifacts stored since the snapshot
+            // was created are not served from it
+            List<String> changed = artifactCacheRepository.getPurlsFetchedSince(opened.getCreationTime());
+            invalidatedInSnapshot.addAll(changed);
+
+            snapshot = opened;
+            log.info(
+                    "Serving {} artifacts from the artifact cache snapshot created at {}, {} changed since",
+                    opened.size(),
+                    opened.getCreationTime(),
+                    changed.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not open the artifact cache snapshot {}", path, e);
+        }
+    }
+
+    private boolean isExpired(ArtifactCacheSnapshot snapshot) {
+        return snapshot.getCreationTime().plus(snapshotMaxAge).isBefore(Instant.now());
+    }
+
+    /**
+     * Returns the cached entries for the provided purls, from the in-memory cache or from the snapshot. Purls which are
+     * not cached are not present in the result.
+     */
+    public Map<String, ArtifactCache> getAllPresent(Collection<String> purls) {
+        Map<String, ArtifactCache> present = cache.getAllPresent(purls);
+
+        ArtifactCacheSnapshot current = snapshot;
+        if (current == null || present.size() == purls.size()) {
+            return present;
+        }
+
+        if (isExpired(current)) {
+            log.info("The artifact cache snapshot expired, not serving artifacts from it anymore");
+            snapshot = null;
+            return present;
+        }
+
+        Map<String, ArtifactCache> result = new HashMap<>(present);
+        for (String purl : purls) {
+            if (result.containsKey(purl) || invalidatedInSnapshot.contains(purl)) {
+                continue;
+            }
+
+            ArtifactCache artifact = current.get(purl);
+            if (artifact != null) {
+                snapshotHits.increment();
+                put(artifact);
+                result.put(purl, artifact);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Caches the entry.
+     */
+    public void put(ArtifactCache artifact) {
+        if (enabled) {
+            cache.put(artifact.getPurl(), artifact);
+        }
+    }
+
+    /**
+     * Invalidates the entries of the provided purls in this replica, and notifies all the other replicas to do the
+     * same. Within a transaction, the other replicas are notified once the transaction commits, and the local
+     * invalidation is repeated once the transaction completes.
+     */
+    public void invalidate(Collection<String> purls) {
+        if (purls.isEmpty()) {
+            return;
+        }
+
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder();
+        for (String purl : purls) {
+            if (payload.length() > 0 && payload.length() + purl.length() + 1 > MAX_PAYLOAD_LENGTH) {
+                payloads.add(payload.toString());
+                payload.setLength(0);
+            }
+            if (payload.length() > 0) {
+                payload.append('\n');
+            }
+            payload.append(purl);
+        }
+        payloads.add(payload.toString());
+
+        publish(payloads);
+    }
+
+    /**
+     * Invalidates all the entries in this replica, and notifies all the other replicas to do the same.
+     */
+    public void invalidateAll() {
+        publish(List.of(INVALIDATE_ALL));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private void publish(List<String> payloads) {
+        payloads.forEach(this::onNotification);
+
+        if (transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            // The local entries might be reloaded from the database before the changes are committed
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    payloads.forEach(ArtifactInfoCache.this::onNotification);
+                }
+            });
+        }
+
+        // Within a transaction the connection is the one enlisted in it, PostgreSQL delivers the notifications only
+        // when (and if) the transaction commits
+        notifyReplicas(payloads);
+    }
+
+    private void notifyReplicas(List<String> payloads) {
+        if (!enabled || !isPostgreSQL()) {
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for (String payload : payloads) {
+                statement.setString(1, CHANNEL);
+                statement.setString(2, payload);
+                statement.execute();
+            }
+        } catch (SQLException e) {
+            // Other replicas keep the stale entries until they are evicted, or until they reconnect
+            log.warn("Could not notify other replicas about the artifact cache invalidation", e);
+        }
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (listener != null) {
+            try (Connection connection = openListenerConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for artifact cache invalidations");
+
+                // Notifications might have been missed while (re)connecting
+                cache.invalidateAll();
+                if (reconnecting) {
+                    dropSnapshot();
+                } else {
+                    snapshotPath.filter(Files::exists).ifPresent(this::openSnapshot);
+                }
+                reconnecting = true;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (listener != null) {
+                    PGNotification[] notifications = pgConnection.getNotifications(10000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        onNotification(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (listener == null) {
+                    return;
+                }
+                log.warn("Listening for artifact cache invalidations failed, reconnecting", e);
+                try {
+                    TimeUnit.SECONDS.sleep(5);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a connection outside of the pool, the listener holds it for as long as the service runs.
+     */
+    private Connection openListenerConnection() throws SQLException {
+        Properties properties = new Properties();
+        username.ifPresent(value -> properties.setProperty("user", value));
+        password.ifPresent(value -> properties.setProperty("password", value));
+        properties.setProperty("ApplicationName", "sbomer-artifact-cache-listener");
+        // Notifications are polled, the connection must not be considered idle by the server in between
+        properties.setProperty("tcpKeepAlive", "true");
+
+        Connection connection = DriverManager.getConnection(jdbcUrl.orElseThrow(), properties);
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    private void onNotification(String payload) {
+        if (INVALIDATE_ALL.equals(payload)) {
+            cache.invalidateAll();
+            dropSnapshot();
+            return;
+        }
+        for (String purl : payload.split("\n")) {
+            cache.invalidate(purl);
+            if (snapshot != null) {
+                invalidatedInSnapshot.add(purl);
+            }
+        }
+    }
+
+    private void dropSnapshot() {
+        if (snapshot != null) {
+            log.info("Not serving artifacts from the artifact cache snapshot anymore");
+            snapshot = null;
+        }
+        invalidatedInSnapshot.clear();
+    }
+
+    private boolean isPostgreSQL() {
+        return "postgresql".equalsIgnoreCase(dbKind);
+    }
+
+    /**
+     * Estimated weight of an entry: the length of the purl and of all the values of the artifact information.
+     */
+    private static int weigh(String purl, ArtifactInfo info) {
+        int weight = 64 + purl.length();
+        for (String value : new String[] { info.getIdentifier(), info.getPurl(), info.getMd5(), info.getSha1(),
+                info.getSha256(), info.getBuildId(), info.getPublicUrl(), info.getOriginUrl(), info.getScmUrl(),
+                info.getScmRevision(), info.getScmTag(), info.getScmExternalUrl(), info.getEnvironmentImage(),
+                info.getBuildSystem() }) {
+            weight += value != null ? value.length() : 0;
+        }
+        return weight;
+    }
+
+}
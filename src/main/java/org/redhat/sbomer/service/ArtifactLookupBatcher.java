@@ -0,0 +1,213 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.faulttolerance.exceptions.FaultToleranceException;
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.errors.PncUnavailableException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batches the single artifact lookups of concurrent callers. Lookups are collected for up to
+ * {@code sbomer.enrichment.batching.window}, or until {@code sbomer.enrichment.batching.max-batch-size} distinct purls
+ * are collected, and are then resolved together by the {@link ArtifactResolutionService}, with a single cache query
+ * and (as long as the batch does not exceed {@code sbomer.pnc.artifact-query-chunk-size}) a single PNC query. Callers
+ * looking up the same purl share its result. When a batch fails for another reason than PNC being unavailable, its
+ * purls are resolved one by one, so that a purl failing to resolve fails only its own callers.
+ */
+@ApplicationScoped
+@Slf4j
+public class ArtifactLookupBatcher {
+
+    @Inject
+    BackgroundExecutors backgroundExecutors;
+
+    @Inject
+    ArtifactResolutionService artifactResolutionService;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sbomer.enrichment.batching.enabled", defaultValue = "true")
+    boolean enabled;
+
+    /**
+     * For how long lookups are collected before the batch is resolved.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.batching.window", defaultValue = "10ms")
+    Duration window;
+
+    /**
+     * Number of distinct purls after which the batch is resolved right away.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.batching.max-batch-size", defaultValue = "50")
+    int maxBatchSize;
+
+    /**
+     * Number of batches, closed by their window, resolved concurrently.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.batching.workers", defaultValue = "4")
+    int workers;
+
+    private final Object lock = new Object();
+
+    /**
+     * Lookups of the batch being collected, keyed by purl. Completed with {@code null} if the purl is not found.
+     */
+    private Map<String, CompletableFuture<ArtifactCache>> batch = new LinkedHashMap<>();
+
+    private ManagedExecutor executor;
+
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    void init() {
+        executor = backgroundExecutors.create(workers, -1);
+        batchSizes = DistributionSummary.builder("sbomer.artifact.lookup.batch.size")
+                .description("Number of distinct purls resolved with a single batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resolves the purl along with the ones looked up concurrently, see {@link ArtifactResolutionService#resolve}.
+     *
+     * @param purl
+     * @return the resolved artifact, or {@code null} if it could be found neither in the cache nor in PNC
+     */
+    public ArtifactCache resolve(String purl) {
+        if (!enabled) {
+            return artifactResolutionService.resolve(List.of(purl)).get(purl);
+        }
+
+        CompletableFuture<ArtifactCache> lookup;
+        Map<String, CompletableFuture<ArtifactCache>> full = null;
+        Map<String, CompletableFuture<ArtifactCache>> opened = null;
+
+        synchronized (lock) {
+            lookup = batch.get(purl);
+            if (lookup == null) {
+                lookup = new CompletableFuture<>();
+                batch.put(purl, lookup);
+
+                if (batch.size() >= maxBatchSize) {
+                    full = batch;
+                    batch = new LinkedHashMap<>();
+                } else if (batch.size() == 1) {
+                    opened = batch;
+                }
+            }
+        }
+
+        if (full != null) {
+            // Resolved by the caller which filled the batch
+            dispatch(full);
+        } else if (opened != null) {
+            scheduleFlush(opened);
+        }
+
+        try {
+            return lookup.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void scheduleFlush(Map<String, CompletableFuture<ArtifactCache>> opened) {
+        CompletableFuture.delayedExecutor(window.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            try {
+                executor.execute(() -> flush(opened));
+            } catch (RejectedExecutionException ex) {
+                // Shutting down
+                flush(opened);
+            }
+        });
+    }
+
+    /**
+     * Resolves the batch, unless it was already resolved because it got full.
+     */
+    private void flush(Map<String, CompletableFuture<ArtifactCache>> expected) {
+        synchronized (lock) {
+            if (batch != expected) {
+                return;
+            }
+            batch = new LinkedHashMap<>();
+        }
+
+        dispatch(expected);
+    }
+
+    private void dispatch(Map<String, CompletableFuture<ArtifactCache>> lookups) {
+        batchSizes.record(lookups.size());
+        log.debug("Resolving a batch of {} artifact lookups", lookups.size());
+
+        try {
+            complete(lookups);
+        } catch (RuntimeException ex) {
+            if (lookups.size() == 1 || isUnavailable(ex)) {
+                lookups.values().forEach(lookup -> lookup.completeExceptionally(ex));
+                return;
+            }
+
+            // A single purl can fail the whole batch, the others should not fail along with it
+            log.debug("A batch of {} artifact lookups failed, resolving them one by one", lookups.size(), ex);
+            lookups.forEach((purl, lookup) -> {
+                try {
+                    complete(Map.of(purl, lookup));
+                } catch (RuntimeException purlEx) {
+                    lookup.completeExceptionally(purlEx);
+                }
+            });
+        }
+    }
+
+    private void complete(Map<String, CompletableFuture<ArtifactCache>> lookups) {
+        Map<String, ArtifactCache> resolved = artifactResolutionService.resolve(lookups.keySet());
+        lookups.forEach((purl, lookup) -> lookup.complete(resolved.get(purl)));
+    }
+
+    /**
+     * Whether the failure is about the build systems being unavailable, which resolving the purls one by one would
+     * not avoid.
+     */
+    private static boolean isUnavailable(RuntimeException ex) {
+        return ex instanceof PncUnavailableException || ex instanceof FaultToleranceException;
+    }
+
+}
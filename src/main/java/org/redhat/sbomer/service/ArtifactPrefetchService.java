@@ -0,0 +1,108 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills the artifact cache with the artifacts of PNC builds in the background, while their base SBOMs are generated,
+ * so that their enrichment later runs (almost) entirely from the cache. Prefetching is best effort: builds which can
+ * not be prefetched, because the queue is full or PNC fails, are enriched as usual.
+ */
+@ApplicationScoped
+@Slf4j
+public class ArtifactPrefetchService {
+
+    @Inject
+    BackgroundExecutors backgroundExecutors;
+
+    @Inject
+    ArtifactResolutionService artifactResolutionService;
+
+    @ConfigProperty(name = "sbomer.enrichment.prefetch.enabled", defaultValue = "true")
+    boolean enabled;
+
+    /**
+     * Number of builds prefetched concurrently.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.prefetch.workers", defaultValue = "1")
+    int workers;
+
+    /**
+     * Maximum number of builds waiting to be prefetched, additional builds are not prefetched.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.prefetch.queue-size", defaultValue = "20")
+    int queueSize;
+
+    /**
+     * Builds queued or being prefetched.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private ManagedExecutor executor;
+
+    @PostConstruct
+    void init() {
+        executor = backgroundExecutors.create(workers, queueSize);
+    }
+
+    /**
+     * Schedules the prefetching of the artifacts of the provided PNC build, unless it is already scheduled.
+     *
+     * @param buildId
+     * @return whether the prefetching was scheduled
+     */
+    public boolean submit(String buildId) {
+        if (!enabled || !pending.add(buildId)) {
+            return false;
+        }
+
+        try {
+            executor.execute(() -> run(buildId));
+        } catch (RejectedExecutionException ex) {
+            pending.remove(buildId);
+            log.warn("Artifacts of build {} will not be prefetched, too many builds are queued", buildId);
+            return false;
+        }
+
+        log.info("Prefetching of the artifacts of build {} scheduled", buildId);
+        return true;
+    }
+
+    private void run(String buildId) {
+        try {
+            artifactResolutionService.prefetch(buildId);
+        } catch (Exception ex) {
+            log.warn("Prefetching of the artifacts of build {} failed", buildId, ex);
+        } finally {
+            pending.remove(buildId);
+        }
+    }
+
+}
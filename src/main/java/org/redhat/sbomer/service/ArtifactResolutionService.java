@@ -0,0 +1,645 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.pnc.common.concurrent.Sequence;
+import org.jboss.pnc.dto.Artifact;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.mappers.api.ArtifactCacheMapper;
+import org.redhat.sbomer.model.ArtifactCache;
+import org.redhat.sbomer.repositories.ArtifactCacheMissRepository;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.service.resolver.ArtifactResolver;
+import org.redhat.sbomer.service.resolver.PncArtifactResolver;
+import org.redhat.sbomer.utils.EnrichmentFingerprint;
+import org.redhat.sbomer.utils.PurlUtils;
+import org.redhat.sbomer.validation.exceptions.ValidationException;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves purls to the artifact information in batches. All the requested purls are first looked up in the
+ * {@link ArtifactCache} with a single query, the missing ones are then fetched from the build systems in chunks (up to
+ * {@code sbomer.enrichment.parallelism} chunks at a time) and stored in the cache. Every chunk is sent to all the
+ * {@link ArtifactResolver}s in parallel, the resolver with the highest {@link ArtifactResolver#getPriority() priority}
+ * knowing a purl wins and its build system is recorded with the artifact. Concurrent resolutions missing the same
+ * purls share a single fetch. Purls which no build system knows are remembered as
+ * {@link org.redhat.sbomer.model.ArtifactCacheMiss} entries, and are not looked up again until the entries expire.
+ * Purls are cached in their canonical form (see {@link PurlUtils}), results are keyed by the requested purls.
+ */
+@ApplicationScoped
+@Slf4j
+public class ArtifactResolutionService {
+
+    /**
+     * Maximum number of prefetched artifacts stored in a single transaction.
+     */
+    private static final int PREFETCH_BATCH_SIZE = 500;
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Inject
+    ArtifactCacheMissRepository artifactCacheMissRepository;
+
+    @Inject
+    ArtifactInfoCache artifactInfoCache;
+
+    @Inject
+    ArtifactCacheMaintenanceService artifactCacheMaintenanceService;
+
+    @Inject
+    PNCService pncService;
+
+    @Inject
+    PncArtifactResolver pncArtifactResolver;
+
+    @Inject
+    Instance<ArtifactResolver> resolverInstances;
+
+    @Inject
+    ArtifactCacheMapper artifactCacheMapper;
+
+    @Inject
+    Validator validator;
+
+    private List<ArtifactResolver> resolvers;
+
+    /**
+     * Maximum number of chunks of purls resolved concurrently. A value of 1 (or lower) resolves them sequentially.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.parallelism", defaultValue = "1")
+    int parallelism;
+
+    /**
+     * Whether the components which were already enriched (see {@link EnrichmentFingerprint}) should be enriched again
+     * only if their cached artifact information changed.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.incremental", defaultValue = "true")
+    boolean incremental;
+
+    /**
+     * For how long a purl which could not be found in PNC is not looked up again. Zero (or a negative value) disables
+     * the negative caching.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.negative-cache-ttl", defaultValue = "24h")
+    Duration negativeCacheTtl;
+
+    /**
+     * Fetches from PNC currently in flight, keyed by purl. Completed with {@code null} if PNC does not know the purl.
+     */
+    private final ConcurrentMap<String, CompletableFuture<org.redhat.sbomer.dto.ArtifactCache>> fetchesInFlight =
+            new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        resolvers = resolverInstances.stream().collect(Collectors.toList());
+        log.info(
+                "Resolving artifacts with {}",
+                resolvers.stream().map(ArtifactResolver::getBuildSystem).collect(Collectors.toList()));
+    }
+
+    /**
+     * Resolves the provided purls. Purls which could be found neither in the cache nor in a build system are not
+     * present in the returned map.
+     *
+     * @param purls
+     * @return a map of resolved artifacts, keyed by the requested purl, in the order of the requested purls
+     */
+    public Map<String, org.redhat.sbomer.dto.ArtifactCache> resolve(Collection<String> purls) {
+        Map<String, String> canonicalPurls = PurlUtils.canonicalize(purls);
+        if (canonicalPurls.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        // The purls are looked up in PNC as they were requested
+        Map<String, String> requestedPurls = new LinkedHashMap<>();
+        canonicalPurls.forEach((purl, canonicalPurl) -> requestedPurls.putIfAbsent(canonicalPurl, purl));
+
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> resolved = new LinkedHashMap<>(
+                lookupCanonical(requestedPurls.keySet()));
+
+        List<String> misses = new ArrayList<>(requestedPurls.keySet());
+        misses.removeAll(resolved.keySet());
+
+        Set<String> knownMisses = isNegativeCacheEnabled() && !misses.isEmpty()
+                ? artifactCacheMissRepository.getValidMisses(misses)
+                : Set.of();
+        misses.removeAll(knownMisses);
+
+        log.info(
+                "Resolving {} artifacts: {} found in cache, {} known to be missing in PNC, {} will be fetched from PNC",
+                requestedPurls.size(),
+                resolved.size(),
+                knownMisses.size(),
+                misses.size());
+
+        if (!misses.isEmpty()) {
+            resolved.putAll(fetchCoalesced(misses, requestedPurls));
+        }
+
+        return byRequestedPurl(canonicalPurls, resolved);
+    }
+
+    /**
+     * Fetches the provided purls from PNC, sharing the fetches already in flight for the same purls (started by
+     * concurrent resolutions) instead of starting new ones. The purls which are not in flight are claimed, fetched and
+     * stored by this resolution first, and only then the shared fetches are awaited.
+     *
+     * @param purls canonical purls
+     * @param requestedPurls the requested purls, keyed by their canonical form
+     * @return a map of the found artifacts, keyed by canonical purl
+     */
+    private Map<String, org.redhat.sbomer.dto.ArtifactCache> fetchCoalesced(
+            List<String> purls,
+            Map<String, String> requestedPurls) {
+        Map<String, CompletableFuture<org.redhat.sbomer.dto.ArtifactCache>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<org.redhat.sbomer.dto.ArtifactCache>> shared = new LinkedHashMap<>();
+
+        for (String purl : purls) {
+            CompletableFuture<org.redhat.sbomer.dto.ArtifactCache> future = new CompletableFuture<>();
+            CompletableFuture<org.redhat.sbomer.dto.ArtifactCache> inFlight = fetchesInFlight.putIfAbsent(purl, future);
+            if (inFlight == null) {
+                owned.put(purl, future);
+            } else {
+                shared.put(purl, inFlight);
+            }
+        }
+
+        if (!shared.isEmpty()) {
+            log.info("{} artifacts are already being fetched from PNC, waiting for them", shared.size());
+        }
+
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> fetched = new LinkedHashMap<>();
+        try {
+            if (!owned.isEmpty()) {
+                fetched.putAll(fetchAndStore(owned.keySet(), requestedPurls));
+            }
+            owned.forEach((purl, future) -> future.complete(fetched.get(purl)));
+        } catch (RuntimeException ex) {
+            owned.values().forEach(future -> future.completeExceptionally(ex));
+            throw ex;
+        } finally {
+            owned.forEach(fetchesInFlight::remove);
+        }
+
+        try {
+            shared.forEach((purl, future) -> {
+                org.redhat.sbomer.dto.ArtifactCache artifact = future.join();
+                if (artifact != null) {
+                    fetched.put(purl, artifact);
+                }
+            });
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+
+        return fetched;
+    }
+
+    private Map<String, org.redhat.sbomer.dto.ArtifactCache> fetchAndStore(
+            Collection<String> purls,
+            Map<String, String> requestedPurls) {
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> fetched = new LinkedHashMap<>();
+
+        // A concurrent fetch might have completed between the lookup and the claim
+        Set<String> toFetch = new LinkedHashSet<>(purls);
+        fetched.putAll(artifactInfoCache.getAllPresent(toFetch));
+        toFetch.removeAll(fetched.keySet());
+
+        if (toFetch.isEmpty()) {
+            return fetched;
+        }
+
+        Map<String, String> resolverPurls = new LinkedHashMap<>();
+        toFetch.forEach(purl -> resolverPurls.put(requestedPurls.getOrDefault(purl, purl), purl));
+
+        Resolution resolution = fetchFromResolvers(new ArrayList<>(resolverPurls.keySet()));
+        List<ArtifactCache> artifactCaches = new ArrayList<>();
+        resolution.found.forEach((purl, info) -> artifactCaches.add(toArtifactCache(resolverPurls.get(purl), info)));
+
+        if (!artifactCaches.isEmpty()) {
+            // Artifacts stored meanwhile by another replica are kept as they are
+            for (ArtifactCache artifactCache : artifactCacheRepository.saveArtifactCaches(artifactCaches, false)) {
+                org.redhat.sbomer.dto.ArtifactCache dto = artifactCacheMapper.toDTO(artifactCache);
+                artifactInfoCache.put(dto);
+                fetched.put(artifactCache.getPurl(), dto);
+            }
+        }
+
+        toFetch.removeAll(fetched.keySet());
+        if (resolution.failure != null && !toFetch.isEmpty()) {
+            // Some build system might know the missing purls
+            throw resolution.failure;
+        }
+
+        if (isNegativeCacheEnabled() && !toFetch.isEmpty()) {
+            log.info("Remembering {} artifacts not found in any build system for {}", toFetch.size(), negativeCacheTtl);
+            artifactCacheMissRepository.saveMisses(toFetch, negativeCacheTtl);
+        }
+
+        return fetched;
+    }
+
+    /**
+     * Fetches the artifacts produced and used by the PNC build in bulk, and stores the ones which are not cached yet,
+     * so that the enrichment of the build finds them in the cache. Artifacts already cached are kept as they are.
+     *
+     * @param buildId
+     * @return number of newly cached artifacts
+     */
+    public int prefetch(String buildId) {
+        Map<String, Artifact> byPurl = new LinkedHashMap<>();
+        for (Artifact artifact : pncService.getBuildArtifacts(buildId)) {
+            if (artifact.getPurl() != null) {
+                byPurl.putIfAbsent(PurlUtils.canonicalize(artifact.getPurl()), artifact);
+            }
+        }
+
+        Set<String> toStore = new LinkedHashSet<>(byPurl.keySet());
+        toStore.removeAll(artifactInfoCache.getAllPresent(toStore).keySet());
+        artifactCacheRepository.getArtifactCaches(toStore).forEach(cached -> toStore.remove(cached.getPurl()));
+
+        List<ArtifactCache> artifactCaches = new ArrayList<>(toStore.size());
+        for (String purl : toStore) {
+            try {
+                artifactCaches.add(toArtifactCache(purl, pncArtifactResolver.toArtifactInfo(byPurl.get(purl))));
+            } catch (ValidationException ex) {
+                log.debug("Not caching artifact {} of build {}, it is not valid", purl, buildId);
+            }
+        }
+
+        int stored = 0;
+        for (int i = 0; i < artifactCaches.size(); i += PREFETCH_BATCH_SIZE) {
+            List<ArtifactCache> batch = artifactCaches
+                    .subList(i, Math.min(i + PREFETCH_BATCH_SIZE, artifactCaches.size()));
+            // Artifacts stored meanwhile by a resolution are kept as they are
+            for (ArtifactCache artifactCache : artifactCacheRepository.saveArtifactCaches(batch, false)) {
+                artifactInfoCache.put(artifactCacheMapper.toDTO(artifactCache));
+                stored++;
+            }
+        }
+
+        log.info(
+                "Prefetched the artifacts of build {}: {} known to PNC, {} already cached, {} stored",
+                buildId,
+                byPurl.size(),
+                byPurl.size() - toStore.size(),
+                stored);
+
+        return stored;
+    }
+
+    /**
+     * Fetches the provided (cached) purls from the build systems again and replaces the cached artifacts. Artifacts
+     * which no build system knows anymore are kept as they are.
+     *
+     * @param purls
+     * @return number of refreshed artifacts
+     */
+    public int refresh(Collection<String> purls) {
+        List<String> toRefresh = new ArrayList<>(new LinkedHashSet<>(purls));
+
+        Resolution resolution = fetchFromResolvers(toRefresh);
+        List<ArtifactCache> artifactCaches = new ArrayList<>();
+        resolution.found.forEach((purl, info) -> artifactCaches.add(toArtifactCache(purl, info)));
+
+        if (!artifactCaches.isEmpty()) {
+            artifactCacheRepository.saveArtifactCaches(artifactCaches, true);
+        }
+
+        if (resolution.failure != null) {
+            artifactInfoCache.invalidate(toRefresh);
+            throw resolution.failure;
+        }
+
+        Set<String> notFound = new LinkedHashSet<>(toRefresh);
+        artifactCaches.forEach(artifactCache -> notFound.remove(artifactCache.getPurl()));
+        if (!notFound.isEmpty()) {
+            log.warn(
+                    "{} cached artifacts could not be found in any build system anymore, keeping them",
+                    notFound.size());
+            // Not retried before they are stale again
+            artifactCacheRepository.updateFetchedAt(notFound, Instant.now());
+        }
+
+        artifactInfoCache.invalidate(toRefresh);
+        return artifactCaches.size();
+    }
+
+    /**
+     * Removes the negative entry of the provided purl, or all the negative entries if no purl is provided, so that the
+     * purls are looked up in PNC again.
+     *
+     * @param purl
+     * @return number of removed entries
+     */
+    public long purgeMisses(String purl) {
+        long purged = artifactCacheMissRepository.deleteMisses(PurlUtils.canonicalize(purl));
+        log.info("Purged {} negative artifact cache entries", purged);
+        return purged;
+    }
+
+    private boolean isNegativeCacheEnabled() {
+        return negativeCacheTtl != null && !negativeCacheTtl.isZero() && !negativeCacheTtl.isNegative();
+    }
+
+    /**
+     * Finds the provided purls in the cache only (the in-memory {@link ArtifactInfoCache} first, then the database),
+     * PNC is never queried.
+     *
+     * @param purls
+     * @return a map of cached artifacts, keyed by the requested purl
+     */
+    public Map<String, org.redhat.sbomer.dto.ArtifactCache> lookup(Collection<String> purls) {
+        Map<String, String> canonicalPurls = PurlUtils.canonicalize(purls);
+        return byRequestedPurl(canonicalPurls, lookupCanonical(new LinkedHashSet<>(canonicalPurls.values())));
+    }
+
+    private Map<String, org.redhat.sbomer.dto.ArtifactCache> lookupCanonical(Set<String> canonicalPurls) {
+        Set<String> distinctPurls = new LinkedHashSet<>(canonicalPurls);
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> cached = new LinkedHashMap<>(
+                artifactInfoCache.getAllPresent(distinctPurls));
+
+        distinctPurls.removeAll(cached.keySet());
+        if (!distinctPurls.isEmpty()) {
+            for (ArtifactCache artifactCache : artifactCacheRepository.getArtifactCaches(distinctPurls)) {
+                org.redhat.sbomer.dto.ArtifactCache dto = artifactCacheMapper.toDTO(artifactCache);
+                artifactInfoCache.put(dto);
+                cached.put(artifactCache.getPurl(), dto);
+            }
+        }
+
+        artifactCacheMaintenanceService.recordAccess(cached.keySet());
+        return cached;
+    }
+
+    private static Map<String, org.redhat.sbomer.dto.ArtifactCache> byRequestedPurl(
+            Map<String, String> canonicalPurls,
+            Map<String, org.redhat.sbomer.dto.ArtifactCache> byCanonicalPurl) {
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> result = new LinkedHashMap<>();
+        canonicalPurls.forEach((purl, canonicalPurl) -> {
+            org.redhat.sbomer.dto.ArtifactCache artifactCache = byCanonicalPurl.get(canonicalPurl);
+            if (artifactCache != null) {
+                result.put(purl, artifactCache);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Resolves the artifacts of the components which need to be enriched. Components are provided as a map of their
+     * purl to the {@link EnrichmentFingerprint} they were enriched with, or {@code null} if they were never enriched.
+     * <ul>
+     * <li>Components never enriched, or enriched by a previous version of the enrichment, are resolved (from the cache
+     * or from PNC).</li>
+     * <li>Components already enriched are looked up in the cache, and are returned only if the cached artifact
+     * information does not match their fingerprint anymore. Those not cached anymore (e.g. evicted) are resolved again
+     * and checked the same way.</li>
+     * </ul>
+     *
+     * In non-incremental mode all the components are resolved.
+     *
+     * @param fingerprints
+     * @return a map of resolved artifacts, keyed by purl, of the components to enrich
+     */
+    public Map<String, org.redhat.sbomer.dto.ArtifactCache> resolveForEnrichment(Map<String, String> fingerprints) {
+        if (!incremental) {
+            return resolve(fingerprints.keySet());
+        }
+
+        Set<String> toResolve = new LinkedHashSet<>();
+        Set<String> enriched = new LinkedHashSet<>();
+        fingerprints.forEach((purl, fingerprint) -> {
+            if (EnrichmentFingerprint.isCurrentVersion(fingerprint)) {
+                enriched.add(purl);
+            } else {
+                toResolve.add(purl);
+            }
+        });
+
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> result = new LinkedHashMap<>(resolve(toResolve));
+
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> cached = new LinkedHashMap<>(lookup(enriched));
+        Set<String> evicted = new LinkedHashSet<>(enriched);
+        evicted.removeAll(cached.keySet());
+        if (!evicted.isEmpty()) {
+            cached.putAll(resolve(evicted));
+        }
+
+        int changed = 0;
+        for (Map.Entry<String, org.redhat.sbomer.dto.ArtifactCache> entry : cached.entrySet()) {
+            String fingerprint = EnrichmentFingerprint.of(entry.getValue().getArtifactInfo());
+            if (!fingerprint.equals(fingerprints.get(entry.getKey()))) {
+                result.put(entry.getKey(), entry.getValue());
+                changed++;
+            }
+        }
+
+        log.info(
+                "{} components already enriched, {} of them not cached anymore, {} with changed artifact information",
+                enriched.size(),
+                evicted.size(),
+                changed);
+
+        return result;
+    }
+
+    /**
+     * Fetches the purls from the build systems, one query per chunk and resolver so that the deadline and the retries
+     * of the resolvers apply to a single query. Up to {@code parallelism} chunks are in flight at a time, without
+     * holding a thread each.
+     */
+    private Resolution fetchFromResolvers(List<String> purls) {
+        int chunkSize = pncService.getArtifactQueryChunkSize();
+
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < purls.size(); i += chunkSize) {
+            chunks.add(purls.subList(i, Math.min(i + chunkSize, purls.size())));
+        }
+
+        Resolution resolution = new Resolution();
+        Multi.createFrom()
+                .iterable(chunks)
+                .onItem()
+                .transformToUni(this::resolveChunk)
+                .merge(Math.max(1, parallelism))
+                .onItem()
+                .invoke(resolution::merge)
+                .collect()
+                .last()
+                .await()
+                .indefinitely();
+        return resolution;
+    }
+
+    /**
+     * Sends the chunk to all the resolvers at once. Completes as soon as every purl is found by a resolver which no
+     * pending resolver of a higher priority could overrule, without waiting for the other resolvers, or once every
+     * resolver answered (or failed).
+     */
+    private Uni<Resolution> resolveChunk(List<String> purls) {
+        Resolution resolution = new Resolution();
+        resolution.pending.addAll(resolvers);
+        return Multi.createFrom()
+                .iterable(resolvers)
+                .onItem()
+                .transformToUni(resolver -> resolve(resolver, purls))
+                .merge(Math.max(1, resolvers.size()))
+                .onItem()
+                .invoke(resolution::merge)
+                .select()
+                .first(answer -> !resolution.isComplete(purls))
+                .collect()
+                .last()
+                .replaceWith(resolution);
+    }
+
+    private static Uni<Resolution> resolve(ArtifactResolver resolver, List<String> purls) {
+        return resolver.resolve(purls)
+                .ifNoItem()
+                .after(resolver.getTimeout())
+                .fail()
+                .map(found -> {
+                    Resolution resolution = new Resolution(resolver);
+                    found.forEach(
+                            (purl, info) -> resolution.found
+                                    .put(purl, info.toBuilder().buildSystem(resolver.getBuildSystem()).build()));
+                    return resolution;
+                })
+                .onFailure()
+                .recoverWithItem(ex -> {
+                    log.warn(
+                            "{} could not resolve {} artifacts: {}",
+                            resolver.getBuildSystem(),
+                            purls.size(),
+                            ex.toString());
+                    Resolution resolution = new Resolution(resolver);
+                    resolution.failure = ex instanceof RuntimeException ? (RuntimeException) ex
+                            : new ApplicationException("{} could not resolve artifacts", resolver.getBuildSystem(), ex);
+                    return resolution;
+                });
+    }
+
+    private ArtifactCache toArtifactCache(String purl, ArtifactInfo info) {
+        ArtifactCache dbEntity = ArtifactCache.of(purl, info);
+        dbEntity.setId(Sequence.nextId());
+
+        Set<ConstraintViolation<ArtifactCache>> violations = validator.validate(dbEntity);
+        if (!violations.isEmpty()) {
+            throw new ValidationException(violations);
+        }
+
+        return dbEntity;
+    }
+
+    /**
+     * Artifacts found by the resolvers, keyed by the requested purl, and the first failure of a resolver, if any.
+     */
+    private static class Resolution {
+
+        private final Map<String, ArtifactInfo> found = new LinkedHashMap<>();
+
+        /**
+         * Priority of the resolver which found each artifact.
+         */
+        private final Map<String, Integer> priorities = new HashMap<>();
+
+        /**
+         * Resolvers which did not answer yet.
+         */
+        private final List<ArtifactResolver> pending = new ArrayList<>();
+
+        /**
+         * The resolver which answered, for the answer of a single resolver.
+         */
+        private final ArtifactResolver resolver;
+
+        private RuntimeException failure;
+
+        Resolution() {
+            this(null);
+        }
+
+        Resolution(ArtifactResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        private int priority(String purl) {
+            return resolver != null ? resolver.getPriority() : priorities.get(purl);
+        }
+
+        synchronized void merge(Resolution other) {
+            other.found.forEach((purl, info) -> {
+                int priority = other.priority(purl);
+                Integer current = priorities.get(purl);
+                if (current == null || priority > current) {
+                    found.put(purl, info);
+                    priorities.put(purl, priority);
+                }
+            });
+            pending.remove(other.resolver);
+            if (failure == null) {
+                failure = other.failure;
+            }
+        }
+
+        /**
+         * Whether all the purls are found, and no pending resolver could overrule the answers.
+         */
+        synchronized boolean isComplete(Collection<String> purls) {
+            int pendingPriority = pending.stream()
+                    .mapToInt(ArtifactResolver::getPriority)
+                    .max()
+                    .orElse(Integer.MIN_VALUE);
+            return purls.stream()
+                    .allMatch(purl -> priorities.containsKey(purl) && priorities.get(purl) >= pendingPriority);
+        }
+    }
+
+}
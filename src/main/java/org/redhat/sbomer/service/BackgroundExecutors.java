@@ -0,0 +1,65 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.context.ThreadContext;
+
+/**
+ * Creates the executors of the background work (enrichment jobs, prefetching, batched lookups) and shuts them down
+ * along with the application.
+ *
+ * Background work outlives the request which submitted it, so no context is propagated to it: the tasks start with
+ * cleared contexts and activate the ones they need themselves.
+ */
+@ApplicationScoped
+public class BackgroundExecutors {
+
+    private final List<ManagedExecutor> executors = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an executor running up to {@code workers} tasks concurrently.
+     *
+     * @param workers
+     * @param queueSize maximum number of tasks waiting for a free worker, further tasks are rejected with a
+     *        {@link java.util.concurrent.RejectedExecutionException}; {@code -1} for no limit
+     * @return
+     */
+    public ManagedExecutor create(int workers, int queueSize) {
+        ManagedExecutor executor = ManagedExecutor.builder()
+                .maxAsync(workers)
+                .maxQueued(queueSize)
+                .propagated(ThreadContext.NONE)
+                .cleared(ThreadContext.ALL_REMAINING)
+                .build();
+        executors.add(executor);
+        return executor;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executors.forEach(ManagedExecutor::shutdownNow);
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.ws.rs.NotFoundException;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.jboss.pnc.common.concurrent.Sequence;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.mappers.api.EnrichmentJobMapper;
+import org.redhat.sbomer.model.EnrichmentJob;
+import org.redhat.sbomer.model.EnrichmentJob.Status;
+import org.redhat.sbomer.repositories.EnrichmentJobRepository;
+
+import io.quarkus.arc.Arc;
+import io.quarkus.arc.ManagedContext;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import io.quarkus.scheduler.Scheduled.ConcurrentExecution;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the enrichment of base SBOMs asynchronously. Every submitted enrichment is tracked as an {@link EnrichmentJob}
+ * and executed on a bounded pool of workers, independently of the HTTP request which submitted it.
+ * <p>
+ * Jobs are queued in memory only, the replica reports periodically that it still holds its queued and running jobs.
+ * Jobs which are not reported anymore, because the replica holding them was stopped, are failed by any other replica
+ * (or by the same one, once restarted), so that clients polling them do not wait forever.
+ */
+@ApplicationScoped
+@Slf4j
+public class EnrichmentJobService {
+
+    private static final int MAX_REASON_LENGTH = 2048;
+
+    @Inject
+    BackgroundExecutors backgroundExecutors;
+
+    @Inject
+    SBOMService sbomService;
+
+    @Inject
+    EnrichmentJobRepository enrichmentJobRepository;
+
+    @Inject
+    EnrichmentJobMapper enrichmentJobMapper;
+
+    /**
+     * Number of enrichment jobs executed concurrently.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.jobs.workers", defaultValue = "2")
+    int workers;
+
+    /**
+     * Maximum number of enrichment jobs waiting for a free worker, additional submissions are rejected.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.jobs.queue-size", defaultValue = "100")
+    int queueSize;
+
+    /**
+     * How often the replica reports that it still holds its queued and running jobs.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.jobs.heartbeat-interval", defaultValue = "30s")
+    Duration heartbeatInterval;
+
+    /**
+     * For how long queued and running jobs can go unreported before they are failed as abandoned.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.jobs.abandon-after", defaultValue = "5m")
+    Duration abandonAfter;
+
+    private ManagedExecutor executor;
+
+    /**
+     * Queued and running jobs held by this replica.
+     */
+    private final Set<Long> activeJobs = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        executor = backgroundExecutors.create(workers, queueSize);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        failAbandonedJobs();
+    }
+
+    /**
+     * Reports the jobs held by this replica and fails the jobs which were abandoned by any replica.
+     *
+     * @return number of failed jobs
+     */
+    @Scheduled(
+            identity = "enrichment-job-heartbeat",
+            every = "{sbomer.enrichment.jobs.heartbeat-interval}",
+            concurrentExecution = ConcurrentExecution.SKIP)
+    public int heartbeat() {
+        if (!activeJobs.isEmpty()) {
+            enrichmentJobRepository.heartbeat(List.copyOf(activeJobs), Instant.now());
+        }
+
+        return failAbandonedJobs();
+    }
+
+    private int failAbandonedJobs() {
+        int failed = enrichmentJobRepository.failAbandoned(
+                Instant.now().minus(abandonAfter),
+                "Abandoned, the replica running the enrichment was stopped");
+
+        if (failed > 0) {
+            log.warn("Failed {} abandoned enrichment jobs", failed);
+        }
+
+        return failed;
+    }
+
+    /**
+     * Schedules the enrichment of the base SBOM of the provided PNC build.
+     *
+     * @param buildId
+     * @param sbomSpec
+     * @return the newly created job, in the {@link Status#QUEUED} state
+     * @throws NotFoundException if there is no base SBOM for the provided build
+     * @throws ApplicationException if the queue of jobs is full
+     */
+    public org.redhat.sbomer.dto.EnrichmentJob submit(String buildId, String sbomSpec) {
+        // Fail early, if there is nothing to enrich
+        sbomService.getBaseSbom(buildId);
+
+        EnrichmentJob job = new EnrichmentJob();
+        job.setId(Sequence.nextId());
+        job.setBuildId(buildId);
+        job.setSbomSpec(sbomSpec);
+        job.setStatus(Status.QUEUED);
+        job.setCreationTime(Instant.now());
+        job.setHeartbeatTime(job.getCreationTime());
+        enrichmentJobRepository.saveJob(job);
+
+        Long jobId = job.getId();
+        activeJobs.add(jobId);
+
+        try {
+            executor.execute(() -> run(jobId, buildId, sbomSpec));
+        } catch (RejectedExecutionException ex) {
+            activeJobs.remove(jobId);
+            enrichmentJobRepository.markFailed(jobId, "Rejected, too many enrichment jobs are queued");
+            throw new ApplicationException("Enrichment of build {} could not be scheduled, the queue is full", buildId);
+        }
+
+        log.info("Enrichment of build {} scheduled as job {}", buildId, jobId);
+
+        return enrichmentJobMapper.toDTO(job);
+    }
+
+    public org.redhat.sbomer.dto.EnrichmentJob getJob(String id) {
+        EnrichmentJob job = null;
+
+        try {
+            job = enrichmentJobRepository.findById(Long.valueOf(id));
+        } catch (NumberFormatException ex) {
+            // Not a valid identifier, handled below
+        }
+
+        if (job == null) {
+            throw new NotFoundException("Enrichment job " + id + " not found.");
+        }
+
+        return enrichmentJobMapper.toDTO(job);
+    }
+
+    private void run(Long jobId, String buildId, String sbomSpec) {
+        log.info("Starting enrichment job {} of build {}", jobId, buildId);
+        if (!enrichmentJobRepository.markRunning(jobId)) {
+            log.warn("Enrichment job {} of build {} was already failed, skipping it", jobId, buildId);
+            activeJobs.remove(jobId);
+            return;
+        }
+
+        // Jobs are executed outside of any HTTP request, but the enrichment reads entities outside of transactions
+        ManagedContext requestContext = Arc.container().requestContext();
+        requestContext.activate();
+
+        try {
+            EnrichmentResult result = sbomService
+                    .enrichBaseSbom(buildId, sbomSpec, stage -> enrichmentJobRepository.markStage(jobId, stage));
+
+            enrichmentJobRepository.markFinished(jobId, result.getComponentCount(), result.getRhComponentCount());
+            log.info("Enrichment job {} of build {} finished", jobId, buildId);
+        } catch (Exception ex) {
+            log.error("Enrichment job {} of build {} failed", jobId, buildId, ex);
+            enrichmentJobRepository.markFailed(jobId, toReason(ex));
+        } finally {
+            requestContext.terminate();
+            activeJobs.remove(jobId);
+        }
+    }
+
+    private String toReason(Exception ex) {
+        String reason = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+        return reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason;
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.jboss.pnc.common.json.JsonUtils;
+import org.redhat.sbomer.utils.RhVersionPattern;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Summary of a finished enrichment of a base SBOM.
+ */
+@Data
+@AllArgsConstructor
+public class EnrichmentResult {
+
+    /**
+     * Number of all components in the enriched SBOM, including the nested ones.
+     */
+    private int componentCount;
+
+    /**
+     * Number of components with a Red Hat version, i.e. the ones which were subject of the enrichment.
+     */
+    private int rhComponentCount;
+
+    /**
+     * Computes the result from the enriched SBOM.
+     *
+     * @param bom enriched SBOM in the CycloneDX JSON format
+     * @return
+     * @throws IOException
+     */
+    public static EnrichmentResult of(JsonNode bom) throws IOException {
+        if (bom != null && bom.isTextual()) {
+            bom = JsonUtils.fromJson(bom.textValue(), JsonNode.class);
+        }
+
+        int componentCount = 0;
+        int rhComponentCount = 0;
+
+        if (bom != null) {
+            Deque<JsonNode> stack = new ArrayDeque<>();
+            stack.push(bom.path("components"));
+            while (!stack.isEmpty()) {
+                for (JsonNode component : stack.pop()) {
+                    componentCount++;
+                    if (RhVersionPattern.isRhVersion(component.path("version").asText())) {
+                        rhComponentCount++;
+                    }
+                    stack.push(component.path("components"));
+                }
+            }
+        }
+
+        return new EnrichmentResult(componentCount, rhComponentCount);
+    }
+
+}
@@ -0,0 +1,356 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.faulttolerance.Bulkhead;
+import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
+import org.eclipse.microprofile.faulttolerance.Retry;
+import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.eclipse.microprofile.faulttolerance.exceptions.BulkheadException;
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.eclipse.microprofile.faulttolerance.exceptions.TimeoutException;
+import org.jboss.pnc.dto.Artifact;
+import org.jboss.pnc.dto.Build;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.errors.PncUnavailableException;
+import org.redhat.sbomer.service.PncConcurrencyLimiter.Priority;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.arc.NoClassInterceptors;
+import io.smallrye.faulttolerance.api.AsynchronousNonBlocking;
+import io.smallrye.faulttolerance.api.ExponentialBackoff;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+
+/**
+ * The PNC operations, each guarded so that a slow or failing PNC does not pile up requests waiting for it:
+ * <ul>
+ * <li>it fails with a {@link TimeoutException} once its deadline passes;</li>
+ * <li>transient failures, including rejections of the bulkhead, are retried with an exponential and jittered backoff
+ * (all the operations are reads);</li>
+ * <li>a circuit breaker, per operation, fails fast with a {@link CircuitBreakerOpenException} while most recent calls
+ * failed;</li>
+ * <li>a bulkhead caps the number of concurrent calls of the operation, further calls are queued and fail with a
+ * {@link BulkheadException} once the queue is full.</li>
+ * </ul>
+ * The guards are declared once for all the operations, only the deadline of {@link #getBuildArtifacts(String)} is
+ * longer. The operations are non-blocking: when the deadline passes, the subscription to the request is cancelled,
+ * which releases its connection and its slot of the limiter, rather than a thread being interrupted.
+ *
+ * Within the guards, the requests to PNC go through an adaptive {@link PncConcurrencyLimiter}, shared by all the
+ * callers, in which builds (fetched for generations) take precedence over the artifacts (fetched for enrichments).
+ *
+ * The methods which are not PNC operations are excluded from the guards with {@link NoClassInterceptors}. The
+ * parameters can be overridden in the configuration for all the operations, e.g.
+ * {@code org.redhat.sbomer.service.GuardedPncClient/Retry/maxRetries}, and the {@code ft.*} metrics are exposed.
+ */
+@ApplicationScoped
+@AsynchronousNonBlocking
+@Timeout(value = 30, unit = ChronoUnit.SECONDS)
+@Retry(
+        maxRetries = 3,
+        delay = 500,
+        jitter = 250,
+        maxDuration = 10,
+        durationUnit = ChronoUnit.MINUTES,
+        retryOn = { PncUnavailableException.class, TimeoutException.class, BulkheadException.class })
+@ExponentialBackoff(factor = 2, maxDelay = 10, maxDelayUnit = ChronoUnit.SECONDS)
+@CircuitBreaker(
+        requestVolumeThreshold = 20,
+        failureRatio = 0.5,
+        delay = 30,
+        delayUnit = ChronoUnit.SECONDS,
+        successThreshold = 2,
+        failOn = { PncUnavailableException.class, TimeoutException.class })
+@Bulkhead(value = 32, waitingTaskQueue = 1000)
+public class GuardedPncClient {
+
+    /**
+     * Maximum number of purls sent to PNC in a single {@code purl=in=(...)} query.
+     */
+    @ConfigProperty(name = "sbomer.pnc.artifact-query-chunk-size", defaultValue = "50")
+    int artifactQueryChunkSize;
+
+    @ConfigProperty(name = "sbomer.pnc.host", defaultValue = "orch.psi.redhat.com")
+    String host;
+
+    @ConfigProperty(name = "sbomer.pnc.protocol", defaultValue = "http")
+    String protocol;
+
+    @ConfigProperty(name = "sbomer.pnc.port")
+    Optional<Integer> port;
+
+    @ConfigProperty(name = "sbomer.pnc.page-size", defaultValue = "100")
+    int pageSize;
+
+    /**
+     * Maximum number of pages of a paged result fetched concurrently.
+     */
+    @ConfigProperty(name = "sbomer.pnc.page-prefetch", defaultValue = "4")
+    int pagePrefetch;
+
+    /**
+     * Maximum number of connections to PNC, the actual number of concurrent requests is set by the limiter.
+     */
+    @ConfigProperty(name = "sbomer.pnc.client.pool-size", defaultValue = "32")
+    int poolSize;
+
+    /**
+     * Connections idle for longer than this are closed.
+     */
+    @ConfigProperty(name = "sbomer.pnc.client.keep-alive", defaultValue = "60s")
+    Duration keepAlive;
+
+    @ConfigProperty(name = "sbomer.pnc.client.connect-timeout", defaultValue = "10s")
+    Duration connectTimeout;
+
+    /**
+     * Connections on which nothing is sent or received for this long are closed, e.g. when PNC hangs.
+     */
+    @ConfigProperty(name = "sbomer.pnc.client.idle-timeout", defaultValue = "30s")
+    Duration idleTimeout;
+
+    /**
+     * Requests which receive nothing from PNC for this long fail.
+     */
+    @ConfigProperty(name = "sbomer.pnc.client.request-timeout", defaultValue = "30s")
+    Duration requestTimeout;
+
+    @ConfigProperty(name = "sbomer.pnc.limiter.initial-limit", defaultValue = "8")
+    int initialLimit;
+
+    @ConfigProperty(name = "sbomer.pnc.limiter.min-limit", defaultValue = "1")
+    int minLimit;
+
+    @ConfigProperty(name = "sbomer.pnc.limiter.max-limit", defaultValue = "32")
+    int maxLimit;
+
+    /**
+     * Requests slower than this lower the limit, as failed ones do.
+     */
+    @ConfigProperty(name = "sbomer.pnc.limiter.latency-threshold", defaultValue = "5s")
+    Duration latencyThreshold;
+
+    @ConfigProperty(name = "sbomer.pnc.limiter.backoff-ratio", defaultValue = "0.9")
+    double backoffRatio;
+
+    /**
+     * Share of the limit reserved for interactive requests, i.e. builds fetched for generations.
+     */
+    @ConfigProperty(name = "sbomer.pnc.limiter.interactive-share", defaultValue = "0.25")
+    double interactiveShare;
+
+    @ConfigProperty(name = "sbomer.pnc.limiter.max-wait", defaultValue = "10s")
+    Duration maxWait;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private PncHttpClient client;
+
+    private PncConcurrencyLimiter limiter;
+
+    @PostConstruct
+    @NoClassInterceptors
+    void init() {
+        limiter = new PncConcurrencyLimiter(
+                initialLimit,
+                minLimit,
+                maxLimit,
+                latencyThreshold,
+                backoffRatio,
+                interactiveShare,
+                maxWait);
+        meterRegistry.gauge("sbomer.pnc.limiter.limit", limiter, PncConcurrencyLimiter::getLimit);
+        meterRegistry.gauge("sbomer.pnc.limiter.in.flight", limiter, PncConcurrencyLimiter::getInFlight);
+        for (Priority priority : Priority.values()) {
+            FunctionCounter.builder("sbomer.pnc.limiter.rejections", limiter, l -> l.getRejections(priority))
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+
+        client = new PncHttpClient(
+                vertx,
+                getClientOptions(),
+                objectMapper,
+                limiter,
+                pageSize,
+                pagePrefetch,
+                requestTimeout);
+    }
+
+    @PreDestroy
+    @NoClassInterceptors
+    void shutdown() {
+        client.close();
+    }
+
+    /**
+     * Setup basic configuration to be able to talk to PNC.
+     *
+     * @return
+     */
+    @NoClassInterceptors
+    private WebClientOptions getClientOptions() {
+        boolean ssl = "https".equalsIgnoreCase(protocol);
+        return new WebClientOptions().setDefaultHost(host)
+                .setDefaultPort(port.orElse(ssl ? 443 : 80))
+                .setSsl(ssl)
+                .setKeepAlive(true)
+                .setKeepAliveTimeout((int) keepAlive.toSeconds())
+                .setMaxPoolSize(poolSize)
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setIdleTimeout((int) idleTimeout.toMillis())
+                .setIdleTimeoutUnit(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetch information about the PNC {@link Build} identified by the particular buildId. Fails with an
+     * {@link ApplicationException} if PNC does not know the build.
+     *
+     * @param buildId
+     * @return
+     */
+    public Uni<Build> getBuild(String buildId) {
+        return client.getBuild(buildId).onItem()
+                .ifNull()
+                .failWith(() -> new ApplicationException("Build was not found in PNC"));
+    }
+
+    /**
+     * Fetch information about the PNC {@link Artifact} identified by the particular purl. The item is {@code null} if
+     * PNC does not know the artifact.
+     *
+     * @param purl
+     * @return
+     */
+    public Uni<Artifact> getArtifact(String purl) {
+        return client.getArtifacts("purl==\"" + purl + "\"").map(artifacts -> {
+            if (artifacts.size() > 1) {
+                throw new IllegalStateException("There should exist only one artifact with purl " + purl);
+            }
+            return artifacts.isEmpty() ? null : artifacts.get(0);
+        });
+    }
+
+    /**
+     * Fetch the PNC {@link Artifact}s produced by the build and the ones it depends on. All the pages of both are
+     * fetched, so the deadline is longer than the one of single lookups. The list is empty if PNC does not know the
+     * build.
+     *
+     * @param buildId
+     * @return the built artifacts, followed by the dependencies
+     */
+    @Timeout(value = 5, unit = ChronoUnit.MINUTES)
+    public Uni<List<Artifact>> getBuildArtifacts(String buildId) {
+        return Uni.combine()
+                .all()
+                .unis(client.getBuiltArtifacts(buildId), client.getDependencyArtifacts(buildId))
+                .combinedWith((built, dependencies) -> {
+                    List<Artifact> artifacts = new ArrayList<>(built.size() + dependencies.size());
+                    artifacts.addAll(built);
+                    artifacts.addAll(dependencies);
+                    return artifacts;
+                });
+    }
+
+    /**
+     * Fetch information about the PNC {@link Artifact}s identified by the provided purls. The purls are split into
+     * chunks of {@code sbomer.pnc.artifact-query-chunk-size} elements, each chunk is fetched with a single
+     * {@code purl=in=(...)} query, all of them concurrently.
+     *
+     * @param purls
+     * @return a map of found artifacts keyed by the requested purl; purls which are not known to PNC are not present
+     */
+    public Uni<Map<String, Artifact>> getArtifacts(Collection<String> purls) {
+        List<String> all = new ArrayList<>(new LinkedHashSet<>(purls));
+        if (all.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
+        }
+
+        List<Uni<Map<String, Artifact>>> chunks = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += artifactQueryChunkSize) {
+            chunks.add(getArtifactsChunk(all.subList(i, Math.min(i + artifactQueryChunkSize, all.size()))));
+        }
+
+        return Uni.join().all(chunks).andFailFast().map(results -> {
+            Map<String, Artifact> result = new HashMap<>(all.size());
+            results.forEach(result::putAll);
+            return result;
+        });
+    }
+
+    /**
+     * Fetch information about the PNC {@link Artifact}s identified by the provided purls with a single query.
+     *
+     * @param purls
+     * @return
+     */
+    @NoClassInterceptors
+    private Uni<Map<String, Artifact>> getArtifactsChunk(List<String> purls) {
+        String artifactQuery = purls.stream()
+                .map(purl -> "\"" + purl + "\"")
+                .collect(Collectors.joining(",", "purl=in=(", ")"));
+
+        return client.getArtifacts(artifactQuery).map(artifacts -> {
+            Set<String> requested = new HashSet<>(purls);
+            Map<String, Artifact> result = new HashMap<>(artifacts.size());
+            for (Artifact artifact : artifacts) {
+                if (!requested.contains(artifact.getPurl())) {
+                    continue;
+                }
+                if (result.put(artifact.getPurl(), artifact) != null) {
+                    throw new IllegalStateException(
+                            "There should exist only one artifact with purl " + artifact.getPurl());
+                }
+            }
+            return result;
+        });
+    }
+
+}
@@ -17,38 +17,43 @@
  */
 package org.redhat.sbomer.service;
 
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
-import java.util.Optional;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
-import org.jboss.pnc.client.ArtifactClient;
-import org.jboss.pnc.client.BuildClient;
-import org.jboss.pnc.client.Configuration;
-import org.jboss.pnc.client.RemoteCollection;
-import org.jboss.pnc.client.RemoteResourceException;
-import org.jboss.pnc.client.RemoteResourceNotFoundException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.pnc.dto.Artifact;
 import org.jboss.pnc.dto.Build;
 import org.redhat.sbomer.errors.ApplicationException;
 
+import io.smallrye.mutiny.Uni;
+
 /**
  * A service to interact with the PNC build system.
+ *
+ * PNC is queried through the {@link GuardedPncClient}, which guards every operation with a deadline, retries, a
+ * circuit breaker and a bulkhead: the {@code *Async} operations do not hold a thread while the requests are in
+ * flight, the blocking operations only wait for their asynchronous counterpart.
  */
 @ApplicationScoped
 public class PNCService {
 
     /**
-     * Setup basic configuration to be able to talk to PNC.
-     *
-     * TODO: Make it configurable -- move to ConfigMap.
-     *
-     * @return
+     * Maximum number of purls sent to PNC in a single {@code purl=in=(...)} query.
      */
-    private Configuration getConfiguration() {
-        return Configuration.builder().host("orch.psi.redhat.com").protocol("http").build();
+    @ConfigProperty(name = "sbomer.pnc.artifact-query-chunk-size", defaultValue = "50")
+    int artifactQueryChunkSize;
+
+    @Inject
+    GuardedPncClient client;
+
+    public int getArtifactQueryChunkSize() {
+        return artifactQueryChunkSize;
     }
 
     /**
@@ -58,15 +63,7 @@ public class PNCService {
      * @return
      */
     public Build getBuild(String buildId) {
-        BuildClient client = new BuildClient(getConfiguration());
-
-        try {
-            return client.getSpecific(buildId);
-        } catch (RemoteResourceNotFoundException ex) {
-            throw new ApplicationException("Build was not found in PNC", ex);
-        } catch (RemoteResourceException ex) {
-            throw new ApplicationException("Build could not be retrieved because PNC responded with an error", ex);
-        }
+        return getBuildAsync(buildId).await().indefinitely();
     }
 
     /**
@@ -76,24 +73,94 @@ public class PNCService {
      * @return
      */
     public Artifact getArtifact(String purl) {
-        ArtifactClient client = new ArtifactClient(getConfiguration());
-
-        try {
-            String artifactQuery = "purl==\"" + purl + "\"";
-            RemoteCollection<Artifact> artifacts = client
-                    .getAll(null, null, null, Optional.empty(), Optional.of(artifactQuery));
-            if (artifacts.size() == 0) {
-                return null;
-            } else if (artifacts.size() > 1) {
-                throw new IllegalStateException("There should exist only one artifact with purl " + purl);
-            }
-            Artifact singleArtifact = artifacts.iterator().next();
-            return singleArtifact;
-        } catch (RemoteResourceNotFoundException ex) {
-            throw new ApplicationException("Artifact was not found in PNC", ex);
-        } catch (RemoteResourceException ex) {
-            throw new ApplicationException("Artifact could not be retrieved because PNC responded with an error", ex);
+        return getArtifactAsync(purl).await().indefinitely();
+    }
+
+    /**
+     * Fetch the PNC {@link Artifact}s produced and used by the build, see {@link #getBuildArtifactsAsync(String)}.
+     *
+     * @param buildId
+     * @return
+     */
+    public List<Artifact> getBuildArtifacts(String buildId) {
+        return getBuildArtifactsAsync(buildId).await().indefinitely();
+    }
+
+    /**
+     * Fetch information about the PNC {@link Artifact}s identified by the provided purls, see
+     * {@link #getArtifactsAsync(Collection)}.
+     *
+     * @param purls
+     * @return a map of found artifacts keyed by the requested purl; purls which are not known to PNC are not present
+     */
+    public Map<String, Artifact> getArtifacts(Collection<String> purls) {
+        return getArtifactsAsync(purls).await().indefinitely();
+    }
+
+    /**
+     * Fetch information about the PNC {@link Build} identified by the particular buildId, without blocking. Fails with
+     * an {@link ApplicationException} if PNC does not know the build.
+     *
+     * @param buildId
+     * @return
+     */
+    public Uni<Build> getBuildAsync(String buildId) {
+        return client.getBuild(buildId);
+    }
+
+    /**
+     * Fetch information about the PNC {@link Build}s identified by the provided buildIds, without blocking.
+     *
+     * @param buildIds
+     * @return a map of the builds keyed by their id
+     */
+    public Uni<Map<String, Build>> getBuildsAsync(Collection<String> buildIds) {
+        List<Uni<Build>> builds = new LinkedHashSet<>(buildIds).stream()
+                .map(this::getBuildAsync)
+                .collect(Collectors.toList());
+        if (builds.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
         }
+
+        return Uni.join()
+                .all(builds)
+                .andFailFast()
+                .map(all -> all.stream().collect(Collectors.toMap(Build::getId, build -> build, (a, b) -> a)));
+    }
+
+    /**
+     * Fetch information about the PNC {@link Artifact} identified by the particular purl, without blocking. The item
+     * is {@code null} if PNC does not know the artifact.
+     *
+     * @param purl
+     * @return
+     */
+    public Uni<Artifact> getArtifactAsync(String purl) {
+        return client.getArtifact(purl);
+    }
+
+    /**
+     * Fetch the PNC {@link Artifact}s produced by the build and the ones it depends on, without blocking. All the
+     * pages of both are fetched, so the deadline is longer than the one of single lookups. The list is empty if PNC
+     * does not know the build.
+     *
+     * @param buildId
+     * @return the built artifacts, followed by the dependencies
+     */
+    public Uni<List<Artifact>> getBuildArtifactsAsync(String buildId) {
+        return client.getBuildArtifacts(buildId);
+    }
+
+    /**
+     * Fetch information about the PNC {@link Artifact}s identified by the provided purls, without blocking. The purls
+     * are split into chunks of {@code sbomer.pnc.artifact-query-chunk-size} elements, each chunk is fetched with a
+     * single {@code purl=in=(...)} query, all of them concurrently.
+     *
+     * @param purls
+     * @return a map of found artifacts keyed by the requested purl; purls which are not known to PNC are not present
+     */
+    public Uni<Map<String, Artifact>> getArtifactsAsync(Collection<String> purls) {
+        return client.getArtifacts(purls);
     }
 
 }
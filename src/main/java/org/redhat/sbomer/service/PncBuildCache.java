@@ -0,0 +1,130 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.time.Instant;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.pnc.dto.Build;
+import org.jboss.pnc.enums.BuildProgress;
+import org.redhat.sbomer.dto.BuildInfo;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.errors.PncUnavailableException;
+import org.redhat.sbomer.mappers.api.BuildInfoMapper;
+import org.redhat.sbomer.model.PncBuild;
+import org.redhat.sbomer.repositories.PncBuildRepository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of finished PNC builds, which never change. Builds are kept in memory (up to
+ * {@code sbomer.pnc.build-cache.max-size} of them) and in the {@link PncBuild} table, so that they survive restarts.
+ * Builds which are still running are never cached.
+ *
+ * The cache is shared by the generations, which need the build of the request, and the artifact resolution, which
+ * derives the build-level information of the artifacts from the build embedded in every artifact returned by PNC:
+ * the artifacts of the same build share the same {@link BuildInfo}.
+ */
+@ApplicationScoped
+@Slf4j
+public class PncBuildCache {
+
+    static final String CACHE_NAME = "pnc-builds";
+
+    @Inject
+    PNCService pncService;
+
+    @Inject
+    PncBuildRepository pncBuildRepository;
+
+    @Inject
+    BuildInfoMapper buildInfoMapper;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @ConfigProperty(name = "sbomer.pnc.build-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    private Cache<String, BuildInfo> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder().maximumSize(maxSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the build, from the cache if possible. Builds fetched from PNC are cached if they are finished.
+     *
+     * @param buildId
+     * @return the build
+     * @throws ApplicationException if PNC does not know the build, or a {@link PncUnavailableException} if PNC could
+     *         not be asked
+     */
+    public BuildInfo get(String buildId) {
+        BuildInfo cached = cache.getIfPresent(buildId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Instant now = Instant.now();
+
+        PncBuild stored = pncBuildRepository.accessBuild(buildId, now);
+        if (stored != null) {
+            return cache.get(buildId, id -> buildInfoMapper.toDTO(stored));
+        }
+
+        Build build = pncService.getBuild(buildId);
+        BuildInfo info = buildInfoMapper.toBuildInfo(build);
+        if (build.getProgress() == BuildProgress.FINISHED) {
+            PncBuild entity = buildInfoMapper.toEntity(info);
+            entity.setLastAccessed(now);
+            pncBuildRepository.saveBuild(entity);
+            cache.put(buildId, info);
+        } else {
+            log.debug("Build {} is not finished yet, not caching it", buildId);
+        }
+
+        return info;
+    }
+
+    /**
+     * Returns the cached information of the build embedded in an artifact, mapping it only if it is not cached yet.
+     * Artifacts are only produced by finished builds. The build is stored in the database along with the artifact.
+     *
+     * @param build
+     * @return
+     */
+    public BuildInfo fromArtifact(Build build) {
+        if (build == null) {
+            return null;
+        }
+        return cache.get(build.getId(), id -> buildInfoMapper.toBuildInfo(build));
+    }
+
+}
@@ -0,0 +1,288 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.errors.PncUnavailableException;
+
+/**
+ * Adaptive limit of the concurrent requests to PNC (AIMD). The limit grows by one per limit's worth of fast calls
+ * while it is actually used, and shrinks by {@code backoffRatio} whenever a call fails or is slower than
+ * {@code latencyThreshold}, so that the concurrency follows what PNC is able to serve at the moment. The limit shrinks
+ * at most once per round trip: only calls started after the last decrease can shrink it again, so that a burst of
+ * calls failing together (e.g. all the calls in flight when PNC goes down) counts as a single congestion signal.
+ *
+ * {@link Priority#BULK} calls may only use the limit minus a share reserved for {@link Priority#INTERACTIVE} calls,
+ * which are also admitted first when both are waiting. Calls are queued without holding a thread; calls waiting for
+ * longer than {@code maxWait} are rejected with a {@link PncUnavailableException}.
+ */
+public class PncConcurrencyLimiter {
+
+    public enum Priority {
+        /**
+         * A user, or a generation, is waiting for the result.
+         */
+        INTERACTIVE,
+        /**
+         * Enrichment of many components, latency does not matter as much.
+         */
+        BULK
+    }
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long latencyThresholdNanos;
+
+    private final double backoffRatio;
+
+    private final double interactiveShare;
+
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Priority, Deque<CompletableFuture<Permit>>> waiting = new EnumMap<>(Priority.class);
+
+    private final Map<Priority, LongAdder> rejections = new EnumMap<>(Priority.class);
+
+    private volatile double limit;
+
+    private volatile int inFlight;
+
+    /**
+     * When the limit was last shrunk, calls started before it were sent under the previous limit.
+     */
+    private long lastDecreaseNanos = System.nanoTime();
+
+    public PncConcurrencyLimiter(
+            int initialLimit,
+            int minLimit,
+            int maxLimit,
+            Duration latencyThreshold,
+            double backoffRatio,
+            double interactiveShare,
+            Duration maxWait) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.interactiveShare = interactiveShare;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+
+        for (Priority priority : Priority.values()) {
+            waiting.put(priority, new ArrayDeque<>());
+            rejections.put(priority, new LongAdder());
+        }
+    }
+
+    /**
+     * Starts the call once the limit allows it. The outcome and the latency of the call adjust the limit; failures
+     * which are not about PNC being unavailable (e.g. a build which does not exist) count as successful calls.
+     */
+    public <R> CompletionStage<R> execute(Priority priority, Supplier<? extends CompletionStage<R>> call) {
+        return acquire(priority).thenCompose(permit -> {
+            try {
+                return call.get().whenComplete((result, failure) -> permit.release(failure));
+            } catch (RuntimeException ex) {
+                permit.release(ex);
+                throw ex;
+            }
+        });
+    }
+
+    /**
+     * Waits until the limit allows a call. The caller must release the permit once the call terminates, however it
+     * terminates; cancelling the returned stage gives up the wait.
+     */
+    public CompletableFuture<Permit> acquire(Priority priority) {
+        CompletableFuture<Permit> admission = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            if (waiting.get(priority).isEmpty() && mayAcquire(priority)) {
+                inFlight++;
+                admission.complete(new Permit());
+                return admission;
+            }
+            waiting.get(priority).addLast(admission);
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture.delayedExecutor(maxWaitNanos, TimeUnit.NANOSECONDS)
+                .execute(() -> reject(priority, admission));
+        return admission;
+    }
+
+    private void reject(Priority priority, CompletableFuture<Permit> admission) {
+        lock.lock();
+        try {
+            if (!waiting.get(priority).remove(admission)) {
+                // Admitted meanwhile
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        rejections.get(priority).increment();
+        admission.completeExceptionally(
+                new PncUnavailableException(
+                        "The concurrency limit of PNC requests ({}) was not freed within {} ms",
+                        getLimit(),
+                        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)));
+    }
+
+    private boolean mayAcquire(Priority priority) {
+        int current = getLimit();
+        if (priority == Priority.INTERACTIVE) {
+            return inFlight < current;
+        }
+
+        int reserved = current > 1 ? Math.max(1, (int) Math.ceil(current * interactiveShare)) : 0;
+        return waiting.get(Priority.INTERACTIVE).isEmpty() && inFlight < current - reserved;
+    }
+
+    /**
+     * Frees the slot of a call, which adjusts the limit unless the call never started.
+     */
+    private void release(long startNanos, boolean started, boolean dropped) {
+        List<CompletableFuture<Permit>> admitted = new ArrayList<>();
+        long now = System.nanoTime();
+
+        lock.lock();
+        try {
+            int used = inFlight--;
+
+            if (!started) {
+                // Given up while waiting, says nothing about PNC
+            } else if (dropped || now - startNanos > latencyThresholdNanos) {
+                if (startNanos - lastDecreaseNanos >= 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (used * 2 >= limit) {
+                // Growing only makes sense when the current limit is used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+
+            for (Priority priority : Priority.values()) {
+                Deque<CompletableFuture<Permit>> queue = waiting.get(priority);
+                while (!queue.isEmpty() && mayAcquire(priority)) {
+                    CompletableFuture<Permit> admission = queue.pollFirst();
+                    if (!admission.isDone()) {
+                        inFlight++;
+                        admitted.add(admission);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Outside of the lock, the admitted calls start right away
+        for (CompletableFuture<Permit> admission : admitted) {
+            if (!admission.complete(new Permit())) {
+                // Cancelled meanwhile
+                release(now, false, false);
+            }
+        }
+    }
+
+    private static boolean isDropped(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure != null
+                && (failure instanceof PncUnavailableException || !(failure instanceof ApplicationException));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getRejections(Priority priority) {
+        return rejections.get(priority).sum();
+    }
+
+    /**
+     * A slot of the limit, held by a call from its start until it terminates.
+     */
+    public final class Permit {
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * Releases the slot once the call terminated, {@code failure} is {@code null} if it succeeded.
+         */
+        public void release(Throwable failure) {
+            if (released.compareAndSet(false, true)) {
+                PncConcurrencyLimiter.this.release(startNanos, true, isDropped(failure));
+            }
+        }
+
+        /**
+         * Releases the slot of a call which was cancelled, e.g. because its deadline passed, like a dropped call.
+         */
+        public void cancel() {
+            if (released.compareAndSet(false, true)) {
+                PncConcurrencyLimiter.this.release(startNanos, true, true);
+            }
+        }
+
+        /**
+         * Releases the slot of a call which was never sent, e.g. because it was given up just as it was admitted,
+         * without adjusting the limit.
+         */
+        public void abandon() {
+            if (released.compareAndSet(false, true)) {
+                PncConcurrencyLimiter.this.release(startNanos, false, false);
+            }
+        }
+
+    }
+
+}
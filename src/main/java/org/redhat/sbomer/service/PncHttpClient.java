@@ -0,0 +1,255 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+import org.jboss.pnc.dto.Artifact;
+import org.jboss.pnc.dto.Build;
+import org.jboss.pnc.dto.response.Page;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.errors.PncUnavailableException;
+import org.redhat.sbomer.service.PncConcurrencyLimiter.Permit;
+import org.redhat.sbomer.service.PncConcurrencyLimiter.Priority;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.ext.web.client.HttpRequest;
+import io.vertx.mutiny.ext.web.client.HttpResponse;
+import io.vertx.mutiny.ext.web.client.WebClient;
+
+/**
+ * Non-blocking client of the PNC REST API. Requests are sent from the Vert.x event loop over a pool of kept-alive
+ * connections, so any number of them can be in flight without holding a thread each. Every request goes through the
+ * {@link PncConcurrencyLimiter}.
+ *
+ * Paged results are streamed: once the first page tells how many pages there are, the following ones are fetched
+ * concurrently, up to {@code pagePrefetch} at a time, as the subscriber consumes the results. Listing many pages takes
+ * about the latency of a page per {@code pagePrefetch} pages instead of one per page, and at most
+ * {@code pagePrefetch} pages are buffered. The elements of different pages may be emitted out of order.
+ *
+ * A request which receives nothing from PNC for {@code requestTimeout} fails. Failures to reach PNC, and responses
+ * other than a success (or a not found resource), are reported as {@link PncUnavailableException}.
+ */
+public class PncHttpClient implements AutoCloseable {
+
+    static final String API_PATH = "/pnc-rest/v2";
+
+    private static final TypeReference<Build> BUILD = new TypeReference<>() {
+    };
+
+    private static final TypeReference<Page<Artifact>> ARTIFACT_PAGE = new TypeReference<>() {
+    };
+
+    private final WebClient client;
+
+    private final ObjectMapper objectMapper;
+
+    private final PncConcurrencyLimiter limiter;
+
+    private final int pageSize;
+
+    private final int pagePrefetch;
+
+    private final long requestTimeoutMillis;
+
+    public PncHttpClient(
+            Vertx vertx,
+            WebClientOptions options,
+            ObjectMapper objectMapper,
+            PncConcurrencyLimiter limiter,
+            int pageSize,
+            int pagePrefetch,
+            Duration requestTimeout) {
+        this.client = WebClient.create(vertx, options);
+        this.objectMapper = objectMapper;
+        this.limiter = limiter;
+        this.pageSize = pageSize;
+        this.pagePrefetch = Math.max(1, pagePrefetch);
+        this.requestTimeoutMillis = requestTimeout.toMillis();
+    }
+
+    /**
+     * Fetches the build, or {@code null} if PNC does not know it.
+     */
+    public Uni<Build> getBuild(String buildId) {
+        return fetch(Priority.INTERACTIVE, client.get(API_PATH + "/builds/" + encode(buildId)), BUILD);
+    }
+
+    /**
+     * Fetches all the artifacts matching the RSQL query.
+     */
+    public Uni<List<Artifact>> getArtifacts(String query) {
+        return streamArtifacts(query).collect().asList();
+    }
+
+    /**
+     * Streams all the artifacts matching the RSQL query.
+     */
+    public Multi<Artifact> streamArtifacts(String query) {
+        return stream(
+                Priority.BULK,
+                pageIndex -> client.get(API_PATH + "/artifacts").addQueryParam("q", query),
+                ARTIFACT_PAGE);
+    }
+
+    /**
+     * Fetches all the artifacts produced by the build.
+     */
+    public Uni<List<Artifact>> getBuiltArtifacts(String buildId) {
+        return streamBuildArtifacts(buildId, "built").collect().asList();
+    }
+
+    /**
+     * Fetches all the artifacts the build depends on.
+     */
+    public Uni<List<Artifact>> getDependencyArtifacts(String buildId) {
+        return streamBuildArtifacts(buildId, "dependencies").collect().asList();
+    }
+
+    private Multi<Artifact> streamBuildArtifacts(String buildId, String kind) {
+        return stream(
+                Priority.BULK,
+                pageIndex -> client.get(API_PATH + "/builds/" + encode(buildId) + "/artifacts/" + kind),
+                ARTIFACT_PAGE);
+    }
+
+    private <T> Multi<T> stream(
+            Priority priority,
+            IntFunction<HttpRequest<Buffer>> request,
+            TypeReference<Page<T>> type) {
+        return fetchPage(priority, request, 0, type).onItem().transformToMulti(first -> {
+            Multi<T> firstPage = Multi.createFrom().iterable(content(first));
+            if (first.getTotalPages() <= 1) {
+                return firstPage;
+            }
+
+            Multi<T> nextPages = Multi.createFrom()
+                    .range(1, first.getTotalPages())
+                    .onItem()
+                    .transformToUni(pageIndex -> fetchPage(priority, request, pageIndex, type))
+                    .merge(pagePrefetch)
+                    .onItem()
+                    .transformToIterable(PncHttpClient::content);
+
+            return Multi.createBy().concatenating().streams(firstPage, nextPages);
+        });
+    }
+
+    private <T> Uni<Page<T>> fetchPage(
+            Priority priority,
+            IntFunction<HttpRequest<Buffer>> request,
+            int pageIndex,
+            TypeReference<Page<T>> type) {
+        HttpRequest<Buffer> pageRequest = request.apply(pageIndex)
+                .addQueryParam("pageIndex", String.valueOf(pageIndex))
+                .addQueryParam("pageSize", String.valueOf(pageSize));
+
+        // A resource which does not exist has no elements
+        return fetch(priority, pageRequest, type).onItem().ifNull().continueWith(Page::new);
+    }
+
+    /**
+     * Sends the request once the limiter allows it, every subscription sends it again. The item is {@code null} if
+     * the resource does not exist. The slot of the limiter is released whenever the request terminates, including
+     * when the subscription is cancelled (e.g. once the deadline of the operation passed).
+     */
+    private <T> Uni<T> fetch(Priority priority, HttpRequest<Buffer> request, TypeReference<T> type) {
+        return acquire(priority)
+                .onItem()
+                .transformToUni(
+                        permit -> request.timeout(requestTimeoutMillis)
+                                .send()
+                                .map(response -> read(response, type))
+                                .onTermination()
+                                .invoke((item, failure, cancelled) -> {
+                                    if (cancelled) {
+                                        permit.cancel();
+                                    } else {
+                                        permit.release(failure);
+                                    }
+                                }))
+                .onFailure(PncHttpClient::isUnexpected)
+                .transform(PncHttpClient::unavailable);
+    }
+
+    private Uni<Permit> acquire(Priority priority) {
+        return Uni.createFrom().deferred(() -> {
+            CompletableFuture<Permit> admission = limiter.acquire(priority);
+            // Admitted just as the wait was given up, the permit was not handed over and the call was never sent
+            return Uni.createFrom()
+                    .completionStage(admission)
+                    .onCancellation()
+                    .invoke(() -> admission.thenAccept(Permit::abandon));
+        });
+    }
+
+    private <T> T read(HttpResponse<Buffer> response, TypeReference<T> type) {
+        if (response.statusCode() == 404) {
+            return null;
+        }
+
+        if (response.statusCode() != 200) {
+            throw new PncUnavailableException(
+                    "PNC responded with {} {}",
+                    response.statusCode(),
+                    response.statusMessage());
+        }
+
+        try {
+            return objectMapper.readValue(response.body().getBytes(), type);
+        } catch (IOException e) {
+            throw new PncUnavailableException("The response of PNC could not be read", e);
+        }
+    }
+
+    private static <T> Collection<T> content(Page<T> page) {
+        return page.getContent() != null ? page.getContent() : List.of();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isUnexpected(Throwable failure) {
+        return !(failure instanceof ApplicationException);
+    }
+
+    private static Throwable unavailable(Throwable failure) {
+        return new PncUnavailableException("PNC could not be reached", failure);
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+}
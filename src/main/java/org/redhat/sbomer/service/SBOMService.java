@@ -18,10 +18,20 @@
 package org.redhat.sbomer.service;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -35,27 +45,24 @@ import javax.ws.rs.NotFoundException;
 
 import org.redhat.sbomer.model.ArtifactCache;
 import org.redhat.sbomer.model.BaseSBOM;
+import org.redhat.sbomer.model.EnrichmentJob.Stage;
 import org.redhat.sbomer.repositories.ArtifactCacheRepository;
 import org.redhat.sbomer.repositories.BaseSBOMRepository;
 import org.redhat.sbomer.service.generator.SBOMGenerator;
-import org.redhat.sbomer.transformer.PncArtifactsToPropertiesSbomTransformer;
 import org.redhat.sbomer.transformer.SbomManipulator;
+import org.redhat.sbomer.transformer.StreamingSbomEnricher;
 import org.redhat.sbomer.validation.exceptions.ValidationException;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 import org.cyclonedx.model.Bom;
 import org.cyclonedx.BomGeneratorFactory;
 import org.cyclonedx.CycloneDxSchema.Version;
 import org.cyclonedx.exception.ParseException;
 import org.cyclonedx.generators.json.BomJsonGenerator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.pnc.common.concurrent.Sequence;
-import org.jboss.pnc.common.json.JsonUtils;
-import org.jboss.pnc.dto.Artifact;
 import org.redhat.sbomer.dto.ArtifactInfo;
 import org.redhat.sbomer.dto.response.Page;
 import org.redhat.sbomer.mappers.api.ArtifactCacheMapper;
-import org.redhat.sbomer.mappers.api.ArtifactInfoMapper;
 import org.redhat.sbomer.mappers.api.BaseSBOMMapper;
 
 import lombok.extern.slf4j.Slf4j;
@@ -76,7 +83,10 @@ public class SBOMService {
     ArtifactCacheRepository artifactCacheRepository;
 
     @Inject
-    PNCService pncService;
+    ArtifactResolutionService artifactResolutionService;
+
+    @Inject
+    ArtifactLookupBatcher artifactLookupBatcher;
 
     @Inject
     SBOMGenerator sbomGenerator;
@@ -87,9 +97,6 @@ public class SBOMService {
     @Inject
     ArtifactCacheMapper artifactCacheMapper;
 
-    @Inject
-    ArtifactInfoMapper artifactInfoMapper;
-
     @Inject
     Validator validator;
 
@@ -97,7 +104,17 @@ public class SBOMService {
     SbomManipulator sbomManipulator;
 
     @Inject
-    PncArtifactsToPropertiesSbomTransformer artifactsToPropertiesSbomTransformer;
+    StreamingSbomEnricher streamingSbomEnricher;
+
+    @Inject
+    ArtifactInfoCache artifactInfoCache;
+
+    /**
+     * Whether the 'properties' enrichment should be run by the {@link StreamingSbomEnricher} instead of the
+     * transformers working on the CycloneDX object model.
+     */
+    @ConfigProperty(name = "sbomer.enrichment.streaming", defaultValue = "false")
+    boolean streamingEnrichment;
 
     /**
      * Runs the generation of SBOM using the available implementation of the generator. This is done in an asynchronous
@@ -153,13 +170,36 @@ public class SBOMService {
         return baseSBOMMapper.toDTO(dbEntity);
     }
 
+    /**
+     * Replaces the SBOM of an existing {@link BaseSBOM}. The components of the new SBOM are enriched from scratch by the
+     * next enrichment.
+     *
+     * @param id
+     * @param bom
+     * @return
+     */
     @Transactional
     public org.redhat.sbomer.dto.BaseSBOM updateBom(Long id, Bom bom) throws ValidationException {
+        return updateBom(id, bom, null);
+    }
+
+    /**
+     * Replaces the SBOM of an existing {@link BaseSBOM} with its enriched version.
+     *
+     * @param id
+     * @param bom
+     * @param enrichmentFingerprints fingerprints of the enriched components, keyed by purl
+     * @return
+     */
+    @Transactional
+    public org.redhat.sbomer.dto.BaseSBOM updateBom(Long id, Bom bom, Map<String, String> enrichmentFingerprints)
+            throws ValidationException {
         log.info("Updating SBOM of existing baseSBOM with id: {}", id);
 
         BaseSBOM dbEntity = baseSbomRepository.findById(id);
         BomJsonGenerator generator = BomGeneratorFactory.createJson(schemaVersion(), bom);
         dbEntity.setSbom(generator.toJsonNode());
+        dbEntity.setEnrichmentFingerprints(enrichmentFingerprints);
 
         Set<ConstraintViolation<BaseSBOM>> violations = validator.validate(dbEntity);
         if (!violations.isEmpty()) {
@@ -175,27 +215,129 @@ public class SBOMService {
 
     public org.redhat.sbomer.dto.BaseSBOM runEnrichmentOfBaseSbom(String buildId, String sbomSpec)
             throws NotFoundException, ValidationException {
+        return runEnrichmentOfBaseSbom(buildId, sbomSpec, stage -> {
+        });
+    }
+
+    private org.redhat.sbomer.dto.BaseSBOM runEnrichmentOfBaseSbom(
+            String buildId,
+            String sbomSpec,
+            Consumer<Stage> progress) throws NotFoundException, ValidationException {
 
+        if (isStreamingEnrichment(sbomSpec)) {
+            runStreamingEnrichment(buildId, progress);
+            return getBaseSbom(buildId);
+        }
+
+        progress.accept(Stage.READING);
         BaseSBOM initialBaseSBOM = baseSbomRepository.getBaseSbom(buildId);
         Bom bom = initialBaseSBOM.getCycloneDxBom();
         if (bom != null) {
-            // TODO change and improve with different strategies
-            // TODO need to switch to async futures
-            if (sbomSpec != null && "properties".equalsIgnoreCase(sbomSpec)) {
-                Bom modifiedBom = sbomManipulator.addTransformer(artifactsToPropertiesSbomTransformer)
-                        .runTransformers(bom);
-                return updateBom(initialBaseSBOM.getId(), modifiedBom);
-            } else {
-                Bom modifiedBom = sbomManipulator.addTransformer(artifactsToPropertiesSbomTransformer)
-                        .runTransformers(bom);
-                return updateBom(initialBaseSBOM.getId(), modifiedBom);
+            // Transformers resolve the artifacts while they enrich the components
+            progress.accept(Stage.ENRICHING);
+            Map<String, String> fingerprints = new HashMap<>();
+            if (initialBaseSBOM.getEnrichmentFingerprints() != null) {
+                fingerprints.putAll(initialBaseSBOM.getEnrichmentFingerprints());
             }
+            Bom modifiedBom = sbomManipulator.runTransformers(sbomSpec, bom, fingerprints);
+            progress.accept(Stage.STORING);
+            return updateBom(initialBaseSBOM.getId(), modifiedBom, fingerprints);
         } else {
             throw new ValidationException("Could not convert initial SBOM of build " + buildId);
         }
 
     }
 
+    /**
+     * Runs the enrichment of the base SBOM, same as {@link #runEnrichmentOfBaseSbom(String, String)}, but returns only
+     * the summary of the enrichment.
+     *
+     * @param buildId
+     * @param sbomSpec
+     * @return
+     */
+    public EnrichmentResult enrichBaseSbom(String buildId, String sbomSpec)
+            throws NotFoundException, ValidationException {
+        return enrichBaseSbom(buildId, sbomSpec, stage -> {
+        });
+    }
+
+    /**
+     * Same as {@link #enrichBaseSbom(String, String)}, reporting every {@link Stage} of the enrichment to the provided
+     * consumer when it starts.
+     *
+     * @param buildId
+     * @param sbomSpec
+     * @param progress
+     * @return
+     */
+    public EnrichmentResult enrichBaseSbom(String buildId, String sbomSpec, Consumer<Stage> progress)
+            throws NotFoundException, ValidationException {
+
+        if (isStreamingEnrichment(sbomSpec)) {
+            return runStreamingEnrichment(buildId, progress);
+        }
+
+        try {
+            return EnrichmentResult.of(runEnrichmentOfBaseSbom(buildId, sbomSpec, progress).getBom());
+        } catch (IOException e) {
+            throw new ValidationException("Could not read enriched SBOM of build " + buildId + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isStreamingEnrichment(String sbomSpec) {
+        return streamingEnrichment && SbomManipulator.PROPERTIES_SPEC.equals(sbomManipulator.resolveSpec(sbomSpec));
+    }
+
+    /**
+     * Runs the enrichment with the {@link StreamingSbomEnricher}. The stored SBOM is read twice as a stream: first to
+     * collect the purls to resolve, then to write the enriched SBOM into a temporary file, which is finally streamed
+     * back to the database. The full CycloneDX object model is never built.
+     *
+     * @param buildId
+     * @param progress
+     * @return
+     */
+    private EnrichmentResult runStreamingEnrichment(String buildId, Consumer<Stage> progress) {
+        log.info("Running streaming enrichment of the base SBOM of build {}", buildId);
+
+        try {
+            progress.accept(Stage.READING);
+            Map<String, String> storedFingerprints = baseSbomRepository.getEnrichmentFingerprints(buildId);
+            Map<String, String> fingerprints = new LinkedHashMap<>();
+            baseSbomRepository.readSbom(buildId, streamingSbomEnricher::collectRhComponents)
+                    .forEach(purl -> fingerprints.put(purl, storedFingerprints.get(purl)));
+
+            progress.accept(Stage.RESOLVING);
+            Map<String, ArtifactInfo> artifacts = new HashMap<>();
+            artifactResolutionService.resolveForEnrichment(fingerprints)
+                    .forEach((purl, artifact) -> artifacts.put(purl, artifact.getArtifactInfo()));
+
+            Path enriched = Files.createTempFile("sbomer-enrichment-", ".json");
+            try {
+                progress.accept(Stage.ENRICHING);
+                EnrichmentResult result;
+                try (Writer writer = Files.newBufferedWriter(enriched, StandardCharsets.UTF_8)) {
+                    result = baseSbomRepository
+                            .readSbom(buildId, reader -> streamingSbomEnricher.enrich(reader, writer, artifacts, fingerprints));
+                }
+
+                progress.accept(Stage.STORING);
+                try (Reader reader = Files.newBufferedReader(enriched, StandardCharsets.UTF_8)) {
+                    baseSbomRepository.updateSbom(buildId, reader, fingerprints);
+                }
+
+                return result;
+            } finally {
+                Files.deleteIfExists(enriched);
+            }
+        } catch (NoResultException nre) {
+            throw new NotFoundException("Base SBOM for build id " + buildId + " not found.");
+        } catch (IOException | UncheckedIOException e) {
+            throw new ValidationException("Could not enrich SBOM of build " + buildId + ": " + e.getMessage());
+        }
+    }
+
     public Page<org.redhat.sbomer.dto.ArtifactCache> listArtifactCache(int pageIndex, int pageSize) {
         log.debug("Getting list of all base artifact caches with pageIndex: {}, pageSize: {}", pageIndex, pageSize);
 
@@ -212,12 +354,24 @@ public class SBOMService {
 
     public org.redhat.sbomer.dto.ArtifactCache getArtifactCache(String purl) {
         log.debug("Getting artifact properties with purl: {}", purl);
-        try {
-            ArtifactCache dbEntity = artifactCacheRepository.getArtifactCache(purl);
-            return artifactCacheMapper.toDTO(dbEntity);
-        } catch (NoResultException nre) {
+        org.redhat.sbomer.dto.ArtifactCache artifactCache = artifactResolutionService.lookup(List.of(purl)).get(purl);
+        if (artifactCache == null) {
             throw new NotFoundException("Artifact info for purl " + purl + " not found.");
         }
+        return artifactCache;
+    }
+
+    /**
+     * Lists the cached artifacts produced by the provided build.
+     *
+     * @param buildId
+     * @return
+     */
+    public List<org.redhat.sbomer.dto.ArtifactCache> listArtifactCacheOfBuild(String buildId) {
+        return artifactCacheRepository.getArtifactCachesOfBuild(buildId)
+                .stream()
+                .map(artifactCacheMapper::toDTO)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -238,41 +392,25 @@ public class SBOMService {
         }
 
         dbEntity.setId(Sequence.nextId());
-        artifactCacheRepository.persistAndFlush(dbEntity);
-        return artifactCacheMapper.toDTO(dbEntity);
+        ArtifactCache stored = artifactCacheRepository.saveArtifactCache(dbEntity);
+        artifactInfoCache.invalidate(List.of(stored.getPurl()));
+        return artifactCacheMapper.toDTO(stored);
     }
 
-    @Transactional
+    /**
+     * Fetch the artifact information for the provided purl, from the {@link ArtifactCache} if available, otherwise from
+     * PNC (and store it in the cache). Concurrent fetches are resolved together, see {@link ArtifactLookupBatcher}.
+     *
+     * @param purl
+     * @return
+     * @throws NotFoundException if the artifact is known neither to the cache nor to PNC
+     */
     public org.redhat.sbomer.dto.ArtifactCache fetchArtifact(String purl) {
-
-        try {
-            org.redhat.sbomer.dto.ArtifactCache cachedArtifact = getArtifactCache(purl);
-            log.info("Artifact with purl {} found in cache!", purl);
-            return cachedArtifact;
-        } catch (NotFoundException nre) {
-            log.info("Artifact with purl {} not found in cache, will fetch from PNC", purl);
-        }
-
-        Artifact artifact = pncService.getArtifact(purl);
-        if (artifact == null) {
+        org.redhat.sbomer.dto.ArtifactCache artifactCache = artifactLookupBatcher.resolve(purl);
+        if (artifactCache == null) {
             throw new NotFoundException("Artifact with purl " + purl + " not found in PNC.");
         }
-
-        try {
-            ArtifactInfo info = artifactInfoMapper.toArtifactInfo(artifact);
-            info.setBuildSystem("PNC");
-            String jsonString = JsonUtils.toJson(info);
-            JsonNode node = JsonUtils.fromJson(jsonString, JsonNode.class);
-            org.redhat.sbomer.dto.ArtifactCache artifactCache = org.redhat.sbomer.dto.ArtifactCache.builder()
-                    .purl(purl)
-                    .info(node)
-                    .build();
-
-            return saveArtifactCache(artifactCache);
-        } catch (IOException ioExc) {
-            throw new ValidationException(
-                    "Could not convert artifatc with purl " + purl + ", exception msg: " + ioExc.getMessage());
-        }
+        return artifactCache;
     }
 
     public static <T> Stream<T> nullableStreamOf(Collection<T> nullableCollection) {
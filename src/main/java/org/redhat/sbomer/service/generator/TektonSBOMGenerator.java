@@ -20,9 +20,10 @@ package org.redhat.sbomer.service.generator;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
-import org.jboss.pnc.dto.Build;
+import org.redhat.sbomer.dto.BuildInfo;
 import org.redhat.sbomer.errors.ApplicationException;
-import org.redhat.sbomer.service.PNCService;
+import org.redhat.sbomer.service.ArtifactPrefetchService;
+import org.redhat.sbomer.service.PncBuildCache;
 
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimVolumeSource;
 import io.fabric8.kubernetes.api.model.PodSecurityContextBuilder;
@@ -37,14 +38,17 @@ import io.fabric8.tekton.pipeline.v1beta1.WorkspaceBindingBuilder;
 public class TektonSBOMGenerator implements SBOMGenerator {
 
     @Inject
-    PNCService pncService;
+    PncBuildCache pncBuildCache;
 
     @Inject
     TektonClient tektonClient;
 
+    @Inject
+    ArtifactPrefetchService artifactPrefetchService;
+
     @Override
     public void generate(String buildId) throws ApplicationException {
-        Build build = pncService.getBuild(buildId);
+        BuildInfo build = pncBuildCache.get(buildId);
 
         PipelineRun pipelineRun = new PipelineRunBuilder().withNewMetadata()
                 .withGenerateName("sbom-")
@@ -74,6 +78,9 @@ public class TektonSBOMGenerator implements SBOMGenerator {
                 .build();
 
         tektonClient.v1beta1().pipelineRuns().resource(pipelineRun).createOrReplace();
+
+        // Fills the artifact cache while the base SBOM is generated, for the enrichment which follows
+        artifactPrefetchService.submit(build.getId());
     }
 
 }
@@ -0,0 +1,65 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service.resolver;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.utils.Constants;
+
+import io.smallrye.mutiny.Uni;
+
+/**
+ * Resolves purls to the artifact information known to a build system. All the resolvers (CDI beans) are queried in
+ * parallel by the {@link org.redhat.sbomer.service.ArtifactResolutionService}. When several resolvers know a purl, the
+ * answer of the resolver with the highest priority wins, as long as it answers within its timeout; among resolvers of
+ * the same priority, the first one answering wins.
+ */
+public interface ArtifactResolver {
+
+    /**
+     * Name of the build system, recorded along with the artifacts it resolves (see
+     * {@link Constants#PNC_BUILD_SYSTEM}, {@link Constants#BREW_BUILD_SYSTEM}).
+     */
+    public String getBuildSystem();
+
+    /**
+     * Resolvers of a higher priority are more authoritative, their answers are waited for (up to their timeout) even
+     * when a resolver of a lower priority already answered.
+     */
+    public default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * For how long the resolver is waited for. A resolver which does not answer in time is handled as a failed one.
+     */
+    public Duration getTimeout();
+
+    /**
+     * Resolves the purls, without blocking. Fails if the build system could not be queried.
+     *
+     * @param purls
+     * @return a map of the found artifacts keyed by the requested purl; purls which are not known to the build system
+     *         are not present
+     */
+    public Uni<Map<String, ArtifactInfo>> resolve(List<String> purls);
+
+}
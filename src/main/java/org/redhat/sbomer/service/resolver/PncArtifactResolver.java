@@ -0,0 +1,99 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.service.resolver;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.pnc.dto.Artifact;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.dto.BuildInfo;
+import org.redhat.sbomer.mappers.api.ArtifactInfoMapper;
+import org.redhat.sbomer.service.GuardedPncClient;
+import org.redhat.sbomer.service.PNCService;
+import org.redhat.sbomer.service.PncBuildCache;
+
+import io.smallrye.mutiny.Uni;
+
+import static org.redhat.sbomer.utils.Constants.PNC_BUILD_SYSTEM;
+
+/**
+ * Resolves purls to the artifacts stored in PNC, along with the information of the builds which produced them.
+ */
+@ApplicationScoped
+public class PncArtifactResolver implements ArtifactResolver {
+
+    public static final int PRIORITY = 100;
+
+    @Inject
+    PNCService pncService;
+
+    @Inject
+    PncBuildCache pncBuildCache;
+
+    @Inject
+    ArtifactInfoMapper artifactInfoMapper;
+
+    /**
+     * Covers the retries of {@link GuardedPncClient}, which has its own deadline for every attempt.
+     */
+    @ConfigProperty(name = "sbomer.resolver.pnc.timeout", defaultValue = "150s")
+    Duration timeout;
+
+    @Override
+    public String getBuildSystem() {
+        return PNC_BUILD_SYSTEM;
+    }
+
+    /**
+     * PNC is the authoritative build system, the other build systems only fill in the artifacts it does not know.
+     */
+    @Override
+    public int getPriority() {
+        return PRIORITY;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public Uni<Map<String, ArtifactInfo>> resolve(List<String> purls) {
+        return pncService.getArtifactsAsync(purls).map(artifacts -> {
+            Map<String, ArtifactInfo> result = new LinkedHashMap<>();
+            artifacts.forEach((purl, artifact) -> result.put(purl, toArtifactInfo(artifact)));
+            return result;
+        });
+    }
+
+    /**
+     * Maps the PNC artifact, with the information of its (cached) build.
+     */
+    public ArtifactInfo toArtifactInfo(Artifact artifact) {
+        BuildInfo build = pncBuildCache.fromArtifact(artifact.getBuild());
+        return artifactInfoMapper.toArtifactInfo(artifact, build).toBuilder().buildSystem(PNC_BUILD_SYSTEM).build();
+    }
+
+}
@@ -17,32 +17,28 @@
  */
 package org.redhat.sbomer.transformer;
 
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_ID;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_SYSTEM;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENVIRONMENT_IMAGE;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ORIGIN_URL;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_PUBLIC_URL;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_SCM_EXTERNAL_URL;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_SCM_REVISION;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_SCM_TAG;
-import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_SCM_URL;
-import static org.redhat.sbomer.utils.SbomUtils.addHash;
-import static org.redhat.sbomer.utils.SbomUtils.addMrrc;
-import static org.redhat.sbomer.utils.SbomUtils.addProperty;
-import static org.redhat.sbomer.utils.SbomUtils.hasHash;
-import static org.redhat.sbomer.utils.SbomUtils.hasProperty;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENRICHMENT_FINGERPRINT;
+import static org.redhat.sbomer.utils.SbomUtils.getAllComponents;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import javax.ws.rs.NotFoundException;
 
 import org.cyclonedx.model.Bom;
 import org.cyclonedx.model.Component;
 import org.cyclonedx.model.Hash.Algorithm;
+import org.redhat.sbomer.utils.ComponentView;
+import org.redhat.sbomer.utils.EnrichmentFingerprint;
 import org.redhat.sbomer.utils.RhVersionPattern;
 import org.redhat.sbomer.dto.ArtifactCache;
 import org.redhat.sbomer.dto.ArtifactInfo;
-import org.redhat.sbomer.service.SBOMService;
+import org.redhat.sbomer.service.ArtifactResolutionService;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -51,69 +47,90 @@ import lombok.extern.slf4j.Slf4j;
 public class PncArtifactsToPropertiesSbomTransformer implements SbomTransformer {
 
     @Inject
-    SBOMService sbomService;
+    ArtifactResolutionService artifactResolutionService;
 
     @Override
     public Bom transform(Bom originalBom) {
+        return transform(originalBom, new HashMap<>());
+    }
+
+    @Override
+    public Bom transform(Bom originalBom, Map<String, String> fingerprints) {
         log.info("Adding PNC cached build info to the SBOM properties");
         if (originalBom.getComponents() == null) {
             return originalBom;
         }
 
-        for (Component c : originalBom.getComponents()) {
+        // Nested components are enriched as well, the same purl may appear in several subtrees
+        List<ComponentView> rhComponents = new ArrayList<>();
+        Map<String, String> previous = new LinkedHashMap<>();
+        for (Component c : getAllComponents(originalBom)) {
             if (RhVersionPattern.isRhVersion(c.getVersion())) {
-                log.info("SBOM component with Red Hat version found, purl: {}", c.getPurl());
-                try {
-                    final ArtifactCache artifact = sbomService.fetchArtifact(c.getPurl());
-                    final ArtifactInfo info = artifact.getArtifactInfo();
-
-                    if (info.getMd5() != null && !hasHash(c.getHashes(), Algorithm.MD5)) {
-                        addHash(c.getHashes(), Algorithm.MD5, info.getMd5());
-                    }
-                    if (info.getSha1() != null && !hasHash(c.getHashes(), Algorithm.SHA1)) {
-                        addHash(c.getHashes(), Algorithm.SHA1, info.getSha1());
-                    }
-                    if (info.getSha256() != null && !hasHash(c.getHashes(), Algorithm.SHA_256)) {
-                        addHash(c.getHashes(), Algorithm.SHA_256, info.getSha256());
-                    }
-
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_PUBLIC_URL)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_PUBLIC_URL, info.getPublicUrl());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_ORIGIN_URL)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_ORIGIN_URL, info.getOriginUrl());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_BUILD_ID)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_BUILD_ID, info.getBuildId());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_BUILD_SYSTEM)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_BUILD_SYSTEM, info.getBuildSystem());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_SCM_URL)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_SCM_URL, info.getScmUrl());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_SCM_REVISION)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_SCM_REVISION, info.getScmRevision());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_SCM_TAG)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_SCM_TAG, info.getScmTag());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_SCM_EXTERNAL_URL)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_SCM_EXTERNAL_URL, info.getScmExternalUrl());
-                    }
-                    if (!hasProperty(c.getProperties(), SBOM_RED_HAT_ENVIRONMENT_IMAGE)) {
-                        addProperty(c.getProperties(), SBOM_RED_HAT_ENVIRONMENT_IMAGE, info.getEnvironmentImage());
-                    }
-
-                    addMrrc(c);
-                } catch (NotFoundException nfe) {
-                    log.warn(nfe.getMessage());
+                log.debug("SBOM component with Red Hat version found, purl: {}", c.getPurl());
+                rhComponents.add(ComponentView.of(c));
+                previous.put(c.getPurl(), fingerprints.get(c.getPurl()));
+            }
+        }
+        log.info(
+                "Found {} components with Red Hat version, {} distinct purls",
+                rhComponents.size(),
+                previous.size());
+
+        // All artifacts are resolved at once, the components are then updated in the order in which they appear in
+        // the BOM. Components already enriched with the same artifact information are not resolved again.
+        Map<String, ArtifactCache> resolved = artifactResolutionService.resolveForEnrichment(previous);
+
+        // The artifact information of every purl is fingerprinted only once per run
+        Map<String, ResolvedArtifact> memo = new HashMap<>();
+
+        for (ComponentView view : rhComponents) {
+            String purl = view.getComponent().getPurl();
+            String fingerprint = previous.get(purl);
+            ArtifactCache artifact = resolved.get(purl);
+
+            if (artifact == null) {
+                if (fingerprint == null) {
+                    log.warn("Artifact with purl {} not found in PNC.", purl);
                 }
+                continue;
+            }
 
+            ResolvedArtifact resolvedArtifact = memo.computeIfAbsent(purl, p -> new ResolvedArtifact(artifact));
+            if (resolvedArtifact.fingerprint.equals(fingerprint)) {
+                continue;
             }
+
+            // Information added by a previous enrichment is outdated and gets replaced
+            boolean legacy = view.removeProperty(SBOM_RED_HAT_ENRICHMENT_FINGERPRINT);
+            enrichComponent(view, resolvedArtifact.info, fingerprint != null || legacy);
         }
 
+        // Purls which are not part of the SBOM anymore are forgotten
+        fingerprints.keySet().retainAll(previous.keySet());
+        memo.forEach((purl, resolvedArtifact) -> fingerprints.put(purl, resolvedArtifact.fingerprint));
+
         return originalBom;
     }
 
-}
\ No newline at end of file
+    private void enrichComponent(ComponentView view, ArtifactInfo info, boolean overwrite) {
+        BiConsumer<Algorithm, String> hash = overwrite ? view::putHash : view::addHashIfMissing;
+        EnrichmentFingerprint.HASHES.forEach((algorithm, value) -> hash.accept(algorithm, value.apply(info)));
+
+        BiConsumer<String, String> property = overwrite ? view::putProperty : view::addPropertyIfMissing;
+        EnrichmentFingerprint.PROPERTIES.forEach((name, value) -> property.accept(name, value.apply(info)));
+
+        view.addMrrc();
+    }
+
+    private static class ResolvedArtifact {
+
+        private final ArtifactInfo info;
+        private final String fingerprint;
+
+        private ResolvedArtifact(ArtifactCache artifact) {
+            this.info = artifact.getArtifactInfo();
+            this.fingerprint = EnrichmentFingerprint.of(info);
+        }
+    }
+
+}
@@ -17,34 +17,107 @@
  */
 package org.redhat.sbomer.transformer;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 import org.cyclonedx.model.Bom;
 
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of named, immutable chains of {@link SbomTransformer}s. The chains are built once at startup and can be run
+ * concurrently, the chain to run is selected by the {@code sbomSpec} of the enrichment request.
+ */
+@Slf4j
 @ApplicationScoped
 public class SbomManipulator {
 
-    private List<SbomTransformer> transformers = List.of();
+    public static final String PROPERTIES_SPEC = "properties";
+
+    public static final String DEFAULT_SPEC = PROPERTIES_SPEC;
+
+    @Inject
+    PncArtifactsToPropertiesSbomTransformer artifactsToPropertiesSbomTransformer;
 
-    public SbomManipulator addTransformer(SbomTransformer transformer) {
-        if (transformers.isEmpty()) {
-            transformers = new ArrayList<>();
+    private Map<String, List<SbomTransformer>> chains;
+
+    @PostConstruct
+    void init() {
+        chains = Map.of(PROPERTIES_SPEC, List.of(artifactsToPropertiesSbomTransformer));
+    }
+
+    /**
+     * @return names of all available transformer chains
+     */
+    public Set<String> getSpecs() {
+        return chains.keySet();
+    }
+
+    /**
+     * Returns the name of the chain of transformers selected by the provided {@code sbomSpec}. If the spec is not
+     * provided, or no chain is registered for it, the default chain is selected.
+     *
+     * @param sbomSpec
+     * @return
+     */
+    public String resolveSpec(String sbomSpec) {
+        if (sbomSpec == null) {
+            return DEFAULT_SPEC;
+        }
+
+        String spec = sbomSpec.toLowerCase(Locale.ROOT);
+        if (!chains.containsKey(spec)) {
+            log.warn("Unknown sbomSpec '{}', falling back to '{}'", sbomSpec, DEFAULT_SPEC);
+            return DEFAULT_SPEC;
         }
-        transformers.add(transformer);
-        return this;
+
+        return spec;
+    }
+
+    /**
+     * Returns the chain of transformers selected by the provided {@code sbomSpec}.
+     *
+     * @param sbomSpec
+     * @return
+     * @see #resolveSpec(String)
+     */
+    public List<SbomTransformer> getTransformers(String sbomSpec) {
+        return chains.get(resolveSpec(sbomSpec));
+    }
+
+    /**
+     * Runs the chain of transformers selected by the {@code sbomSpec} on the provided {@link Bom}.
+     *
+     * @param sbomSpec
+     * @param bom
+     * @return the transformed {@link Bom}
+     */
+    public Bom runTransformers(String sbomSpec, Bom bom) {
+        return runTransformers(sbomSpec, bom, new HashMap<>());
     }
 
-    public Bom runTransformers(Bom bom) {
-        List<SbomTransformer> transformers = this.transformers;
-        if (!transformers.isEmpty()) {
-            for (SbomTransformer t : transformers) {
-                bom = t.transform(bom);
-            }
+    /**
+     * Runs the chain of transformers selected by the {@code sbomSpec} on the provided {@link Bom}, skipping the
+     * components already enriched with the same data.
+     *
+     * @param sbomSpec
+     * @param bom
+     * @param fingerprints fingerprints of the previous enrichment, keyed by purl; updated in place
+     * @return the transformed {@link Bom}
+     * @see SbomTransformer#transform(Bom, Map)
+     */
+    public Bom runTransformers(String sbomSpec, Bom bom, Map<String, String> fingerprints) {
+        for (SbomTransformer t : getTransformers(sbomSpec)) {
+            bom = t.transform(bom, fingerprints);
         }
         return bom;
     }
 
-}
\ No newline at end of file
+}
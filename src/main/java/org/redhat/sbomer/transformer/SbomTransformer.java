@@ -17,6 +17,8 @@
  */
 package org.redhat.sbomer.transformer;
 
+import java.util.Map;
+
 import org.cyclonedx.model.Bom;
 
 public interface SbomTransformer {
@@ -29,4 +31,17 @@ public interface SbomTransformer {
      */
     Bom transform(Bom originalBom);
 
+    /**
+     * Same as {@link #transform(Bom)}, for transformers which skip the components already transformed with the same
+     * data.
+     *
+     * @param originalBom the SBOM to be transformed
+     * @param fingerprints the {@link org.redhat.sbomer.utils.EnrichmentFingerprint}s of the components enriched by the
+     *        previous run, keyed by purl; updated in place with the ones of this run
+     * @return transformed SBOM instance
+     */
+    default Bom transform(Bom originalBom, Map<String, String> fingerprints) {
+        return transform(originalBom);
+    }
+
 }
@@ -0,0 +1,455 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.transformer;
+
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENRICHMENT_FINGERPRINT;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.cyclonedx.model.ExternalReference;
+import org.cyclonedx.model.Hash.Algorithm;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.service.EnrichmentResult;
+import org.redhat.sbomer.utils.Constants;
+import org.redhat.sbomer.utils.EnrichmentFingerprint;
+import org.redhat.sbomer.utils.RhVersionPattern;
+import org.redhat.sbomer.validation.exceptions.ValidationException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streaming counterpart of the {@link PncArtifactsToPropertiesSbomTransformer}. Instead of building the full CycloneDX
+ * object model, the SBOM is read with a Jackson streaming parser and written straight to the output. Only a single
+ * component of the top-level {@code components} array (along with its nested components) is held in memory at a time,
+ * while its {@code hashes}, {@code properties}, {@code publisher} and {@code externalReferences} are patched.
+ * Everything else is copied token by token.
+ */
+@Slf4j
+@ApplicationScoped
+public class StreamingSbomEnricher {
+
+    private static final String COMPONENTS = "components";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Reads the SBOM and returns the distinct purls of all (top-level and nested) components with a Red Hat version.
+     *
+     * @param in SBOM in the CycloneDX JSON format
+     * @return
+     * @throws IOException
+     */
+    public Set<String> collectRhComponents(Reader in) throws IOException {
+        Set<String> purls = new LinkedHashSet<>();
+
+        try (JsonParser parser = openParser(in)) {
+            forEachComponent(parser, null, component -> {
+                if (isRhComponent(component)) {
+                    purls.add(component.path("purl").asText());
+                }
+            });
+        }
+
+        return purls;
+    }
+
+    /**
+     * Reads the SBOM, adds the information of the resolved artifacts to the (top-level and nested) components with a
+     * Red Hat version and writes the result. Components already enriched with the same information are left untouched.
+     *
+     * @param in SBOM in the CycloneDX JSON format
+     * @param out where the enriched SBOM is written to
+     * @param artifacts resolved artifacts, keyed by purl
+     * @param fingerprints the {@link EnrichmentFingerprint}s of the components enriched by the previous run, keyed by
+     *        purl; updated in place with the ones of this run
+     * @return
+     * @throws IOException
+     */
+    public EnrichmentResult enrich(
+            Reader in,
+            Writer out,
+            Map<String, ArtifactInfo> artifacts,
+            Map<String, String> fingerprints) throws IOException {
+        int[] counts = new int[2];
+        Set<String> purls = new HashSet<>();
+        // Fingerprints are computed only once per purl, however often it appears in the SBOM
+        Map<String, String> newFingerprints = new HashMap<>();
+
+        try (JsonParser parser = openParser(in); JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            forEachComponent(parser, generator, component -> {
+                counts[0]++;
+                if (!isRhComponent(component)) {
+                    return;
+                }
+                counts[1]++;
+
+                String purl = component.path("purl").asText();
+                String fingerprint = fingerprints.get(purl);
+                ArtifactInfo info = artifacts.get(purl);
+                purls.add(purl);
+
+                if (info == null) {
+                    if (fingerprint == null) {
+                        log.warn("Artifact with purl {} not found in PNC.", purl);
+                    }
+                    return;
+                }
+
+                String newFingerprint = newFingerprints.computeIfAbsent(purl, p -> EnrichmentFingerprint.of(info));
+                if (newFingerprint.equals(fingerprint)) {
+                    return;
+                }
+
+                boolean legacy = removeProperty(component, SBOM_RED_HAT_ENRICHMENT_FINGERPRINT);
+                enrichComponent(component, info, fingerprint != null || legacy);
+            });
+        }
+
+        // Purls which are not part of the SBOM anymore are forgotten
+        fingerprints.keySet().retainAll(purls);
+        fingerprints.putAll(newFingerprints);
+
+        return new EnrichmentResult(counts[0], counts[1]);
+    }
+
+    /**
+     * Creates a parser positioned at the root object of the SBOM. SBOMs stored as a JSON string (containing the JSON
+     * document) are unwrapped while they are read, without holding the whole document in memory.
+     */
+    private JsonParser openParser(Reader in) throws IOException {
+        Reader reader = in.markSupported() ? in : new BufferedReader(in);
+        reader.mark(1);
+        int first = reader.read();
+        while (first != -1 && Character.isWhitespace(first)) {
+            reader.mark(1);
+            first = reader.read();
+        }
+
+        if (first == '"') {
+            reader = new JsonStringReader(reader);
+        } else {
+            reader.reset();
+        }
+
+        JsonParser parser = mapper.getFactory().createParser(reader);
+
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw new ValidationException("SBOM is not a JSON object");
+        }
+
+        return parser;
+    }
+
+    /**
+     * Walks the root object of the SBOM, passing every element of the top-level {@code components} array to the
+     * visitor. If a generator is provided, everything is written to it, including the (possibly modified) components.
+     */
+    private void forEachComponent(JsonParser parser, JsonGenerator generator, Consumer<ObjectNode> visitor)
+            throws IOException {
+        if (generator != null) {
+            generator.writeStartObject();
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (generator != null) {
+                generator.writeFieldName(field);
+            }
+
+            if (COMPONENTS.equals(field) && value == JsonToken.START_ARRAY) {
+                if (generator != null) {
+                    generator.writeStartArray();
+                }
+
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    JsonNode component = mapper.readTree(parser);
+                    visitTree(component, visitor);
+                    if (generator != null) {
+                        mapper.writeTree(generator, component);
+                    }
+                }
+
+                if (generator != null) {
+                    generator.writeEndArray();
+                }
+            } else if (generator != null) {
+                generator.copyCurrentStructure(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (generator != null) {
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Passes the component and all the components nested in it to the visitor, in pre-order.
+     */
+    private void visitTree(JsonNode component, Consumer<ObjectNode> visitor) {
+        Deque<JsonNode> stack = new ArrayDeque<>();
+        stack.push(component);
+        while (!stack.isEmpty()) {
+            JsonNode node = stack.pop();
+            if (!(node instanceof ObjectNode)) {
+                continue;
+            }
+            visitor.accept((ObjectNode) node);
+
+            JsonNode nested = node.get(COMPONENTS);
+            if (nested instanceof ArrayNode) {
+                for (int i = nested.size() - 1; i >= 0; i--) {
+                    stack.push(nested.get(i));
+                }
+            }
+        }
+    }
+
+    private boolean isRhComponent(ObjectNode component) {
+        JsonNode version = component.get("version");
+        return version != null && version.isTextual() && RhVersionPattern.isRhVersion(version.textValue());
+    }
+
+    private boolean removeProperty(ObjectNode component, String name) {
+        JsonNode properties = component.get("properties");
+        if (!(properties instanceof ArrayNode)) {
+            return false;
+        }
+
+        for (int i = 0; i < properties.size(); i++) {
+            if (key(name).equals(key(properties.get(i).path("name").asText()))) {
+                ((ArrayNode) properties).remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the information of the artifact to the component. If {@code overwrite} is {@code false} existing hashes and
+     * properties are kept, otherwise they are replaced.
+     */
+    private void enrichComponent(ObjectNode component, ArtifactInfo info, boolean overwrite) {
+        ArrayNode hashes = arrayField(component, "hashes");
+        Map<String, ObjectNode> algorithms = index(hashes, "alg");
+        EnrichmentFingerprint.HASHES
+                .forEach((algorithm, value) -> putHash(hashes, algorithms, algorithm, value.apply(info), overwrite));
+
+        ArrayNode properties = arrayField(component, "properties");
+        Map<String, ObjectNode> names = index(properties, "name");
+        EnrichmentFingerprint.PROPERTIES
+                .forEach((name, value) -> putProperty(properties, names, name, value.apply(info), overwrite));
+
+        addMrrc(component);
+    }
+
+    private ArrayNode arrayField(ObjectNode component, String field) {
+        JsonNode node = component.get(field);
+        if (node instanceof ArrayNode) {
+            return (ArrayNode) node;
+        }
+        return component.putArray(field);
+    }
+
+    /**
+     * Indexes the elements of the array by the (lower-cased) value of the given field, so that lookups do not need to
+     * scan the array again.
+     */
+    private Map<String, ObjectNode> index(JsonNode array, String field) {
+        Map<String, ObjectNode> index = new HashMap<>();
+        for (JsonNode element : array) {
+            if (element instanceof ObjectNode) {
+                index.putIfAbsent(key(element.path(field).asText()), (ObjectNode) element);
+            }
+        }
+        return index;
+    }
+
+    private void putHash(
+            ArrayNode hashes,
+            Map<String, ObjectNode> algorithms,
+            Algorithm algorithm,
+            String value,
+            boolean overwrite) {
+        if (value == null) {
+            return;
+        }
+
+        ObjectNode hash = algorithms.get(key(algorithm.getSpec()));
+        if (hash == null) {
+            hash = hashes.addObject().put("alg", algorithm.getSpec());
+            algorithms.put(key(algorithm.getSpec()), hash);
+        } else if (!overwrite) {
+            return;
+        }
+        hash.put("content", value);
+    }
+
+    private void putProperty(
+            ArrayNode properties,
+            Map<String, ObjectNode> names,
+            String name,
+            String value,
+            boolean overwrite) {
+        ObjectNode property = names.get(key(name));
+        if (property == null) {
+            property = properties.addObject().put("name", name);
+            names.put(key(name), property);
+        } else if (!overwrite) {
+            return;
+        }
+        property.put("value", value != null ? value : "");
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private void addMrrc(ObjectNode component) {
+        component.put("publisher", Constants.PUBLISHER);
+
+        String distribution = ExternalReference.Type.DISTRIBUTION.getTypeName();
+        ArrayNode externalRefs = arrayField(component, "externalReferences");
+        for (JsonNode ref : externalRefs) {
+            if (ref instanceof ObjectNode && distribution.equals(ref.path("type").asText())) {
+                ((ObjectNode) ref).put("url", Constants.MRRC_URL);
+                return;
+            }
+        }
+        externalRefs.addObject().put("type", distribution).put("url", Constants.MRRC_URL);
+    }
+
+    /**
+     * Reads the content of a JSON string, from right after its opening quote, unescaping it on the fly. The end of the
+     * string is the end of the stream.
+     */
+    private static class JsonStringReader extends Reader {
+
+        private final Reader in;
+
+        private boolean finished;
+
+        JsonStringReader(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            int count = 0;
+            while (count < length) {
+                int c = readChar();
+                if (c == -1) {
+                    break;
+                }
+                buffer[offset + count++] = (char) c;
+            }
+
+            return count == 0 ? -1 : count;
+        }
+
+        private int readChar() throws IOException {
+            if (finished) {
+                return -1;
+            }
+
+            int c = in.read();
+            if (c == -1) {
+                throw new IOException("Unterminated JSON string");
+            }
+
+            if (c == '"') {
+                finished = true;
+                return -1;
+            }
+
+            if (c != '\\') {
+                return c;
+            }
+
+            int escaped = in.read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    return escaped;
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < hex.length; i++) {
+                        int h = in.read();
+                        if (h == -1) {
+                            throw new IOException("Unterminated JSON string");
+                        }
+                        hex[i] = (char) h;
+                    }
+                    try {
+                        return Integer.parseInt(new String(hex), 16);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid unicode escape in JSON string: \\u" + new String(hex));
+                    }
+                default:
+                    throw new IOException("Invalid escape in JSON string: " + (char) escaped);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
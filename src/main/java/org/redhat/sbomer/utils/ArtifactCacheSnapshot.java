@@ -0,0 +1,301 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.dto.ArtifactInfo;
+
+/**
+ * Read-only, memory-mapped snapshot of the artifact cache, written periodically to a volume shared by the replicas so
+ * that a starting replica can serve cached artifacts without querying the database. The file is made of:
+ * <ul>
+ * <li>a header: magic number, format version, creation time (epoch millis, when the writer was created, before the
+ * artifacts were read) and number of entries;</li>
+ * <li>an index of (purl hash, record offset) pairs, sorted by hash, see {@link PurlUtils#hash(String)};</li>
+ * <li>the records: the id, the (canonical) purl and the artifact information, as length-prefixed UTF-8 strings.</li>
+ * </ul>
+ * Lookups binary search the index and verify the purl of the records with the same hash.
+ */
+public class ArtifactCacheSnapshot {
+
+    private static final int MAGIC = 0x53424143;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final int NULL_LENGTH = -1;
+
+    private final ByteBuffer buffer;
+
+    private final Instant creationTime;
+
+    private final int size;
+
+    private final int recordsOffset;
+
+    private ArtifactCacheSnapshot(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an artifact cache snapshot, or an unsupported version");
+        }
+
+        this.buffer = buffer;
+        this.creationTime = Instant.ofEpochMilli(buffer.getLong(8));
+        this.size = buffer.getInt(16);
+        this.recordsOffset = HEADER_SIZE + size * INDEX_ENTRY_SIZE;
+
+        if (size < 0 || recordsOffset > buffer.limit()) {
+            throw new IOException("Truncated artifact cache snapshot");
+        }
+    }
+
+    /**
+     * Maps the snapshot file in memory, read-only.
+     */
+    public static ArtifactCacheSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Artifact cache snapshot too large to be mapped: " + channel.size() + " bytes");
+            }
+
+            // The mapping stays valid once the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ArtifactCacheSnapshot(buffer);
+        }
+    }
+
+    public Instant getCreationTime() {
+        return creationTime;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the artifact with the provided canonical purl.
+     *
+     * @param canonicalPurl
+     * @return the artifact, or {@code null} if it is not in the snapshot
+     */
+    public ArtifactCache get(String canonicalPurl) {
+        long hash = PurlUtils.hash(canonicalPurl);
+
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hashAt(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        for (int i = low; i < size && hashAt(i) == hash; i++) {
+            Reader reader = new Reader(recordsOffset + (int) buffer.getLong(HEADER_SIZE + i * INDEX_ENTRY_SIZE + 8));
+            String id = reader.next();
+            String purl = reader.next();
+
+            if (canonicalPurl.equals(purl)) {
+                ArtifactInfo info = ArtifactInfo.builder()
+                        .purl(purl)
+                        .identifier(reader.next())
+                        .md5(reader.next())
+                        .sha1(reader.next())
+                        .sha256(reader.next())
+                        .publicUrl(reader.next())
+                        .originUrl(reader.next())
+                        .buildSystem(reader.next())
+                        .buildId(reader.next())
+                        .scmUrl(reader.next())
+                        .scmRevision(reader.next())
+                        .scmTag(reader.next())
+                        .scmExternalUrl(reader.next())
+                        .environmentImage(reader.next())
+                        .build();
+                return ArtifactCache.builder().id(id).purl(purl).info(info).build();
+            }
+        }
+
+        return null;
+    }
+
+    private long hashAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * INDEX_ENTRY_SIZE);
+    }
+
+    /**
+     * Sequential reader of the length-prefixed strings of a record.
+     */
+    private class Reader {
+
+        private int position;
+
+        Reader(int position) {
+            this.position = position;
+        }
+
+        String next() {
+            int length = buffer.getInt(position);
+            position += 4;
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+
+            byte[] bytes = new byte[length];
+            buffer.get(position, bytes);
+            position += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates a new snapshot file. The artifacts are added one by one, their records are spooled to a temporary file
+     * while only the index is kept in memory. The snapshot replaces the target file atomically on {@link #commit()},
+     * so that readers never see a partially written snapshot.
+     */
+    public static Writer writer(Path target) throws IOException {
+        return new Writer(target);
+    }
+
+    public static class Writer implements Closeable {
+
+        private final Path target;
+
+        private final Path records;
+
+        private final DataOutputStream output;
+
+        private final long creationTime = System.currentTimeMillis();
+
+        private long[] hashes = new long[1024];
+
+        private long[] offsets = new long[1024];
+
+        private int size;
+
+        private long position;
+
+        private Writer(Path target) throws IOException {
+            this.target = target;
+            this.records = Files.createTempFile(target.toAbsolutePath().getParent(), ".artifact-cache-records", ".tmp");
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(records)));
+        }
+
+        public void add(ArtifactCache artifact) throws IOException {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+
+            hashes[size] = PurlUtils.hash(artifact.getPurl());
+            offsets[size] = position;
+            size++;
+
+            ArtifactInfo info = artifact.getArtifactInfo();
+            for (String value : new String[] { artifact.getId(), artifact.getPurl(), info.getIdentifier(),
+                    info.getMd5(), info.getSha1(), info.getSha256(), info.getPublicUrl(), info.getOriginUrl(),
+                    info.getBuildSystem(), info.getBuildId(), info.getScmUrl(), info.getScmRevision(),
+                    info.getScmTag(), info.getScmExternalUrl(), info.getEnvironmentImage() }) {
+                write(value);
+            }
+        }
+
+        private void write(String value) throws IOException {
+            if (value == null) {
+                output.writeInt(NULL_LENGTH);
+                position += 4;
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            position += 4 + bytes.length;
+        }
+
+        /**
+         * Writes the snapshot file and replaces the target file with it.
+         *
+         * @return number of artifacts in the snapshot
+         */
+        public int commit() throws IOException {
+            output.close();
+
+            if ((long) HEADER_SIZE + (long) size * INDEX_ENTRY_SIZE + position > Integer.MAX_VALUE) {
+                throw new IOException("Artifact cache snapshot would be too large to be mapped");
+            }
+
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+            Path snapshot = Files.createTempFile(target.toAbsolutePath().getParent(), ".artifact-cache", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(snapshot)));
+                        InputStream in = Files.newInputStream(records)) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(creationTime);
+                    out.writeInt(size);
+                    out.writeInt(0);
+                    for (Integer i : order) {
+                        out.writeLong(hashes[i]);
+                        out.writeLong(offsets[i]);
+                    }
+                    in.transferTo(out);
+                }
+
+                Files.move(snapshot, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(snapshot);
+            }
+
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+            Files.deleteIfExists(records);
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.cyclonedx.model.Component;
+import org.cyclonedx.model.ExternalReference;
+import org.cyclonedx.model.Hash;
+import org.cyclonedx.model.Hash.Algorithm;
+import org.cyclonedx.model.Property;
+
+/**
+ * Mutable view over the hashes, properties and external references of a single {@link Component}. The existing
+ * properties and hashes are indexed by name and algorithm (case-insensitively) once, when the view is created, and
+ * kept up to date as items are added through the view. Lookups are then constant time, instead of a scan of the whole
+ * list as done by the {@link SbomUtils} helpers.
+ *
+ * Items added to the component directly, bypassing the view, are not seen by it.
+ */
+public class ComponentView {
+
+    private final Component component;
+    private final List<Hash> hashes;
+    private final List<Property> properties;
+    private final Map<String, Hash> hashesByAlgorithm = new HashMap<>();
+    private final Map<String, Property> propertiesByName = new HashMap<>();
+
+    private ComponentView(Component component) {
+        this.component = component;
+
+        if (component.getHashes() == null) {
+            component.setHashes(new ArrayList<>());
+        }
+        if (component.getProperties() == null) {
+            component.setProperties(new ArrayList<>());
+        }
+        this.hashes = component.getHashes();
+        this.properties = component.getProperties();
+
+        for (Hash hash : hashes) {
+            hashesByAlgorithm.putIfAbsent(key(hash.getAlgorithm()), hash);
+        }
+        for (Property property : properties) {
+            propertiesByName.putIfAbsent(key(property.getName()), property);
+        }
+    }
+
+    public static ComponentView of(Component component) {
+        return new ComponentView(component);
+    }
+
+    public Component getComponent() {
+        return component;
+    }
+
+    public boolean hasHash(Algorithm algorithm) {
+        return hashesByAlgorithm.containsKey(key(algorithm.getSpec()));
+    }
+
+    public boolean hasProperty(String name) {
+        return propertiesByName.containsKey(key(name));
+    }
+
+    /**
+     * Returns the value of the property with the provided name, or {@code null} if there is no such property.
+     */
+    public String getPropertyValue(String name) {
+        Property property = propertiesByName.get(key(name));
+        return property != null ? property.getValue() : null;
+    }
+
+    /**
+     * Adds the hash, unless the value is {@code null} or a hash with the same algorithm is already present.
+     *
+     * @return {@code true} if the hash was added
+     */
+    public boolean addHashIfMissing(Algorithm algorithm, String value) {
+        if (value == null || hasHash(algorithm)) {
+            return false;
+        }
+        putHash(algorithm, value);
+        return true;
+    }
+
+    /**
+     * Sets the value of the hash, replacing any hash with the same algorithm. A {@code null} value is ignored.
+     */
+    public void putHash(Algorithm algorithm, String value) {
+        if (value == null) {
+            return;
+        }
+
+        Hash hash = new Hash(algorithm, value);
+        Hash previous = hashesByAlgorithm.put(key(algorithm.getSpec()), hash);
+        if (previous != null) {
+            // Hashes are immutable, the (rare) replacement is the only case which needs to scan the list
+            hashes.set(hashes.indexOf(previous), hash);
+        } else {
+            hashes.add(hash);
+        }
+    }
+
+    /**
+     * Adds the property, unless a property with the same name is already present. A {@code null} value is stored as an
+     * empty string.
+     *
+     * @return {@code true} if the property was added
+     */
+    public boolean addPropertyIfMissing(String name, String value) {
+        if (hasProperty(name)) {
+            return false;
+        }
+        putProperty(name, value);
+        return true;
+    }
+
+    /**
+     * Sets the value of the property, adding the property if it is not present yet. A {@code null} value is stored as
+     * an empty string.
+     */
+    public void putProperty(String name, String value) {
+        Property property = propertiesByName.get(key(name));
+        if (property != null) {
+            property.setValue(value != null ? value : "");
+            return;
+        }
+
+        SbomUtils.addProperty(properties, name, value);
+        propertiesByName.put(key(name), properties.get(properties.size() - 1));
+    }
+
+    /**
+     * Removes the property with the provided name, if present.
+     *
+     * @return {@code true} if the property was removed
+     */
+    public boolean removeProperty(String name) {
+        Property property = propertiesByName.remove(key(name));
+        if (property == null) {
+            return false;
+        }
+        properties.remove(property);
+        return true;
+    }
+
+    /**
+     * Same as {@link SbomUtils#addMrrc(Component)}, but updates the external references in place.
+     */
+    public void addMrrc() {
+        component.setPublisher(Constants.PUBLISHER);
+
+        List<ExternalReference> externalRefs = component.getExternalReferences();
+        if (externalRefs == null) {
+            externalRefs = new ArrayList<>();
+            component.setExternalReferences(externalRefs);
+        }
+
+        for (ExternalReference ref : externalRefs) {
+            if (ExternalReference.Type.DISTRIBUTION.equals(ref.getType())) {
+                ref.setUrl(Constants.MRRC_URL);
+                return;
+            }
+        }
+
+        ExternalReference dist = new ExternalReference();
+        dist.setType(ExternalReference.Type.DISTRIBUTION);
+        dist.setUrl(Constants.MRRC_URL);
+        externalRefs.add(dist);
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -28,6 +28,8 @@ public class Constants {
     public static final String SBOM_RED_HAT_SCM_TAG = "scm-tag";
     public static final String SBOM_RED_HAT_SCM_EXTERNAL_URL = "scm-external-url";
     public static final String SBOM_RED_HAT_ENVIRONMENT_IMAGE = "environment-image";
+    // Recorded on the enriched components by previous versions, now removed from them when they are enriched again
+    public static final String SBOM_RED_HAT_ENRICHMENT_FINGERPRINT = "enrichment-fingerprint";
 
     public static final String PNC_BUILD_SYSTEM = "PNC";
     public static final String BREW_BUILD_SYSTEM = "BREW";
@@ -0,0 +1,112 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.cyclonedx.model.Hash.Algorithm;
+import org.jboss.pnc.common.json.JsonUtils;
+import org.redhat.sbomer.dto.ArtifactInfo;
+
+/**
+ * Fingerprint of the artifact information a component was enriched with. It is made of the version of the enrichment
+ * and the SHA-256 of the artifact information used, e.g. {@code 3f2a91c0:9b1e...}, and allows to skip components
+ * which were already enriched with the same data.
+ * <p>
+ * Fingerprints are stored along with the base SBOM, keyed by purl, see
+ * {@link org.redhat.sbomer.model.BaseSBOM#getEnrichmentFingerprints()}. They are not part of the published SBOM.
+ */
+public class EnrichmentFingerprint {
+
+    /**
+     * Hashes added to the enriched components, along with their values.
+     */
+    public static final Map<Algorithm, Function<ArtifactInfo, String>> HASHES;
+
+    /**
+     * Properties added to the enriched components, along with their values.
+     */
+    public static final Map<String, Function<ArtifactInfo, String>> PROPERTIES;
+
+    static {
+        Map<Algorithm, Function<ArtifactInfo, String>> hashes = new LinkedHashMap<>();
+        hashes.put(Algorithm.MD5, ArtifactInfo::getMd5);
+        hashes.put(Algorithm.SHA1, ArtifactInfo::getSha1);
+        hashes.put(Algorithm.SHA_256, ArtifactInfo::getSha256);
+        HASHES = Collections.unmodifiableMap(hashes);
+
+        Map<String, Function<ArtifactInfo, String>> properties = new LinkedHashMap<>();
+        properties.put(Constants.SBOM_RED_HAT_PUBLIC_URL, ArtifactInfo::getPublicUrl);
+        properties.put(Constants.SBOM_RED_HAT_ORIGIN_URL, ArtifactInfo::getOriginUrl);
+        properties.put(Constants.SBOM_RED_HAT_BUILD_ID, ArtifactInfo::getBuildId);
+        properties.put(Constants.SBOM_RED_HAT_BUILD_SYSTEM, ArtifactInfo::getBuildSystem);
+        properties.put(Constants.SBOM_RED_HAT_SCM_URL, ArtifactInfo::getScmUrl);
+        properties.put(Constants.SBOM_RED_HAT_SCM_REVISION, ArtifactInfo::getScmRevision);
+        properties.put(Constants.SBOM_RED_HAT_SCM_TAG, ArtifactInfo::getScmTag);
+        properties.put(Constants.SBOM_RED_HAT_SCM_EXTERNAL_URL, ArtifactInfo::getScmExternalUrl);
+        properties.put(Constants.SBOM_RED_HAT_ENVIRONMENT_IMAGE, ArtifactInfo::getEnvironmentImage);
+        PROPERTIES = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Version of the enrichment, derived from what is added to the components: the {@link #HASHES},
+     * {@link #PROPERTIES}, publisher and distribution URL. Whenever any of them changes, so does the version and all
+     * the components get enriched again.
+     */
+    public static final String VERSION = sha256(
+            HASHES.keySet().stream().map(Algorithm::getSpec).collect(Collectors.joining(","))
+                    + "|" + String.join(",", PROPERTIES.keySet()) + "|" + Constants.PUBLISHER + "|"
+                    + Constants.MRRC_URL).substring(0, 8);
+
+    private static final String SEPARATOR = ":";
+
+    public static String of(ArtifactInfo info) {
+        try {
+            return VERSION + SEPARATOR + sha256(JsonUtils.toJson(info));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Whether the fingerprint was recorded by the current version of the enrichment.
+     */
+    public static boolean isCurrentVersion(String fingerprint) {
+        return fingerprint != null && fingerprint.startsWith(VERSION + SEPARATOR);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.packageurl.MalformedPackageURLException;
+import com.github.packageurl.PackageURL;
+
+/**
+ * Canonical form of the purls used as keys of the artifact cache, so that purls which differ only in the order of the
+ * qualifiers, in the case of the parts which are case-insensitive (type, qualifier keys, and namespace and name for
+ * some types) or in their percent-encoding, are looked up as the same artifact.
+ */
+public class PurlUtils {
+
+    /**
+     * Returns the canonical form of the purl, or the (trimmed) purl itself if it is not a valid purl.
+     */
+    public static String canonicalize(String purl) {
+        if (purl == null) {
+            return null;
+        }
+
+        String trimmed = purl.trim();
+        try {
+            // A literal '+' is not special in purls, but would be decoded as a space by the parser
+            return new PackageURL(trimmed.replace("+", "%2B")).canonicalize();
+        } catch (MalformedPackageURLException e) {
+            return trimmed;
+        }
+    }
+
+    /**
+     * Canonicalizes the purls.
+     *
+     * @return a map of the distinct purls to their canonical form, in the order of the provided purls
+     */
+    public static Map<String, String> canonicalize(Collection<String> purls) {
+        Map<String, String> canonical = new LinkedHashMap<>();
+        for (String purl : purls) {
+            canonical.computeIfAbsent(purl, PurlUtils::canonicalize);
+        }
+        return canonical;
+    }
+
+    /**
+     * Returns the 64-bit hash of the (canonical) purl, made of the first 8 bytes of its SHA-256. Different purls can
+     * have the same hash, lookups by hash have to be verified against the purl.
+     */
+    public static long hash(String canonicalPurl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(canonicalPurl.getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
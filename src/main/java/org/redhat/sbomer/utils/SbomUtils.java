@@ -17,7 +17,10 @@
  */
 package org.redhat.sbomer.utils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -61,6 +64,35 @@ public class SbomUtils {
         properties.add(property);
     }
 
+    /**
+     * Returns all the components of the BOM, including the ones nested in other components, in the order in which they
+     * appear in the BOM (pre-order).
+     */
+    public static List<Component> getAllComponents(Bom bom) {
+        List<Component> all = new ArrayList<>();
+        if (bom.getComponents() == null) {
+            return all;
+        }
+
+        Deque<Iterator<Component>> stack = new ArrayDeque<>();
+        stack.push(bom.getComponents().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Component> siblings = stack.peek();
+            if (!siblings.hasNext()) {
+                stack.pop();
+                continue;
+            }
+
+            Component component = siblings.next();
+            all.add(component);
+            if (component.getComponents() != null && !component.getComponents().isEmpty()) {
+                stack.push(component.getComponents().iterator());
+            }
+        }
+
+        return all;
+    }
+
     public static Optional<Component> findComponentWithPurl(String purl, Bom bom) {
         return bom.getComponents().stream().filter(c -> c.getPurl().equals(purl)).findFirst();
     }
@@ -0,0 +1,41 @@
+--
+-- JBoss, Home of Professional Open Source.
+-- Copyright 2023 Red Hat, Inc., and individual contributors
+-- as indicated by the @author tags.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Schema of the service before the artifact cache was split in typed columns. Existing databases, created by
+-- Hibernate, are baselined at this version (quarkus.flyway.baseline-on-migrate) and only get the later migrations.
+
+CREATE TABLE base_sbom (
+    id bigint NOT NULL,
+    build_id varchar(255) NOT NULL,
+    generation_time timestamp,
+    sbom jsonb,
+    CONSTRAINT base_sbom_pkey PRIMARY KEY (id),
+    CONSTRAINT uq_basesbom_buildid UNIQUE (build_id)
+);
+
+CREATE INDEX idx_basesbom_buildid ON base_sbom (build_id);
+
+CREATE TABLE artifact_cache (
+    id bigint NOT NULL,
+    purl varchar(255) NOT NULL,
+    info jsonb,
+    CONSTRAINT artifact_cache_pkey PRIMARY KEY (id),
+    CONSTRAINT uq_artifact_cache_purl UNIQUE (purl)
+);
+
+CREATE INDEX idx_artifact_cache_purl ON artifact_cache (purl);
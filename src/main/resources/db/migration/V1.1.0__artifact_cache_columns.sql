@@ -0,0 +1,136 @@
+--
+-- JBoss, Home of Professional Open Source.
+-- Copyright 2023 Red Hat, Inc., and individual contributors
+-- as indicated by the @author tags.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Asynchronous enrichment jobs
+CREATE TABLE enrichment_job (
+    id bigint NOT NULL,
+    build_id varchar(255) NOT NULL,
+    sbom_spec varchar(255),
+    status varchar(255) NOT NULL,
+    stage varchar(255),
+    reason varchar(2048),
+    creation_time timestamp NOT NULL,
+    start_time timestamp,
+    end_time timestamp,
+    heartbeat_time timestamp,
+    component_count integer,
+    rh_component_count integer,
+    CONSTRAINT enrichment_job_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_enrichmentjob_buildid ON enrichment_job (build_id);
+
+-- Fingerprints of the enriched components, kept out of the published SBOM
+ALTER TABLE base_sbom ADD COLUMN enrichment_fingerprints jsonb;
+
+-- Purls not known by PNC
+CREATE TABLE artifact_cache_miss (
+    id bigint NOT NULL,
+    purl varchar(255) NOT NULL,
+    creation_time timestamp NOT NULL,
+    expiration_time timestamp NOT NULL,
+    CONSTRAINT artifact_cache_miss_pkey PRIMARY KEY (id),
+    CONSTRAINT uq_artifact_cache_miss_purl UNIQUE (purl)
+);
+
+-- Build-level information, shared by the artifacts of a build
+CREATE TABLE pnc_build (
+    id varchar(255) NOT NULL,
+    scm_url varchar(2048),
+    scm_revision varchar(255),
+    scm_tag varchar(1024),
+    scm_external_url varchar(2048),
+    environment_image varchar(2048),
+    last_accessed timestamp,
+    CONSTRAINT pnc_build_pkey PRIMARY KEY (id)
+);
+
+-- Artifact-level information in typed columns, instead of the JSON of ArtifactInfo in the info column
+ALTER TABLE artifact_cache
+    ADD COLUMN purl_hash bigint,
+    ADD COLUMN identifier varchar(1024),
+    ADD COLUMN md5 varchar(32),
+    ADD COLUMN sha1 varchar(40),
+    ADD COLUMN sha256 varchar(64),
+    ADD COLUMN public_url varchar(2048),
+    ADD COLUMN origin_url varchar(2048),
+    ADD COLUMN build_system varchar(255),
+    ADD COLUMN build_id varchar(255),
+    ADD COLUMN fetched_at timestamp,
+    ADD COLUMN last_accessed timestamp;
+
+-- The info column was written either as a JSON object or as a JSON string holding the object. Entries which cannot
+-- be parsed were returned as empty information by the service, they are deleted and fetched again from PNC.
+CREATE FUNCTION pg_temp.artifact_info(info jsonb) RETURNS jsonb AS $$
+BEGIN
+    IF jsonb_typeof(info) = 'string' THEN
+        info := (info #>> '{}')::jsonb;
+    END IF;
+    IF jsonb_typeof(info) = 'object' THEN
+        RETURN info;
+    END IF;
+    RETURN NULL;
+EXCEPTION WHEN others THEN
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+CREATE TEMPORARY TABLE artifact_cache_info ON COMMIT DROP AS
+    SELECT id, pg_temp.artifact_info(info) AS info FROM artifact_cache;
+
+DELETE FROM artifact_cache c USING artifact_cache_info i WHERE c.id = i.id AND i.info IS NULL;
+
+INSERT INTO pnc_build (id, scm_url, scm_revision, scm_tag, scm_external_url, environment_image)
+    SELECT DISTINCT ON (info ->> 'buildId')
+            info ->> 'buildId',
+            info ->> 'scmUrl',
+            info ->> 'scmRevision',
+            info ->> 'scmTag',
+            info ->> 'scmExternalUrl',
+            info ->> 'environmentImage'
+        FROM artifact_cache_info
+        WHERE info ->> 'buildId' IS NOT NULL
+        ORDER BY info ->> 'buildId', id DESC;
+
+-- The fetch time is unknown, the entries are considered fetched now and are refreshed when they get stale. The hash
+-- is PurlUtils.hash: the first 8 bytes of the SHA-256 of the purl, as a signed big-endian long. Purls stored before
+-- they were canonicalized are not found by the lookups anymore, they are evicted once they are the coldest entries.
+UPDATE artifact_cache c
+    SET identifier = i.info ->> 'identifier',
+        md5 = i.info ->> 'md5',
+        sha1 = i.info ->> 'sha1',
+        sha256 = i.info ->> 'sha256',
+        public_url = i.info ->> 'publicUrl',
+        origin_url = i.info ->> 'originUrl',
+        build_system = COALESCE(i.info ->> 'buildSystem', 'PNC'),
+        build_id = i.info ->> 'buildId',
+        fetched_at = now() AT TIME ZONE 'UTC',
+        purl_hash = ('x' || substr(encode(sha256(convert_to(c.purl, 'UTF8')), 'hex'), 1, 16))::bit(64)::bigint
+    FROM artifact_cache_info i
+    WHERE c.id = i.id;
+
+ALTER TABLE artifact_cache
+    ALTER COLUMN purl_hash SET NOT NULL,
+    ADD CONSTRAINT fk_artifact_cache_build FOREIGN KEY (build_id) REFERENCES pnc_build (id),
+    DROP COLUMN info;
+
+DROP INDEX idx_artifact_cache_purl;
+
+CREATE INDEX idx_artifact_cache_purl_hash ON artifact_cache (purl_hash);
+CREATE INDEX idx_artifact_cache_build_id ON artifact_cache (build_id);
+CREATE INDEX idx_artifact_cache_last_accessed ON artifact_cache (last_accessed);
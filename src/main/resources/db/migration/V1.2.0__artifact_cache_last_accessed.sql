@@ -0,0 +1,23 @@
+--
+-- JBoss, Home of Professional Open Source.
+-- Copyright 2023 Red Hat, Inc., and individual contributors
+-- as indicated by the @author tags.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- The eviction orders by the last access time alone, so that it can use idx_artifact_cache_last_accessed: entries
+-- never accessed are considered accessed when they were fetched
+UPDATE artifact_cache SET last_accessed = COALESCE(fetched_at, now() AT TIME ZONE 'UTC') WHERE last_accessed IS NULL;
+
+ALTER TABLE artifact_cache ALTER COLUMN last_accessed SET NOT NULL;
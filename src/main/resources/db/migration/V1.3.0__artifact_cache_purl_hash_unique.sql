@@ -0,0 +1,26 @@
+--
+-- JBoss, Home of Professional Open Source.
+-- Copyright 2023 Red Hat, Inc., and individual contributors
+-- as indicated by the @author tags.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+-- http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- The purls are unique along with their hash, the statements by purl use the index of the constraint by its leading
+-- hash column and the indexes of the purls alone and of the hashes alone are not needed anymore. The hashes were
+-- backfilled by V1.1.0.
+ALTER TABLE artifact_cache
+    DROP CONSTRAINT uq_artifact_cache_purl,
+    ADD CONSTRAINT uq_artifact_cache_purl_hash_purl UNIQUE (purl_hash, purl);
+
+DROP INDEX idx_artifact_cache_purl_hash;
@@ -0,0 +1,209 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jboss.pnc.dto.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.redhat.sbomer.service.PncConcurrencyLimiter;
+import org.redhat.sbomer.service.PncHttpClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the time needed to look up artifacts one after the other (as blocking calls do) and all at once with the
+ * non-blocking client, and with kept-alive connections or a new connection per request, against a local HTTP stand-in
+ * of PNC answering after a few milliseconds (a few more for the first request of a connection). Run with
+ * {@code mvn test -Dtest=PncClientBenchmarkTest -Dsbomer.benchmark=true}.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "sbomer.benchmark", matches = "true")
+public class PncClientBenchmarkTest {
+
+    private static final int WARMUP = 50;
+
+    private static final int CALLS = 500;
+
+    private static final long LATENCY_MILLIS = 5;
+
+    private static final long CONNECTION_SETUP_MILLIS = 5;
+
+    private static final byte[] EMPTY_PAGE = ("{\"pageIndex\":0,\"pageSize\":100,\"totalPages\":0,\"totalHits\":0,"
+            + "\"content\":[]}").getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private Vertx vertx;
+
+    private PncHttpClient client;
+
+    private PncHttpClient newConnectionClient;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    static {
+        // Otherwise the responses of the stand-in wait for delayed ACKs on kept-alive connections (read once, before the
+        // first server is created)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    @BeforeEach
+    public void start() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            // Every connection has its own client port, the first request of a connection also pays for the
+            // connection setup (TCP and TLS handshakes) with the remote PNC
+            boolean newConnection = clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                Thread.sleep(LATENCY_MILLIS + (newConnection ? CONNECTION_SETUP_MILLIS : 0));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, EMPTY_PAGE.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(EMPTY_PAGE);
+            }
+        });
+        server.start();
+
+        vertx = Vertx.vertx();
+        client = newClient(true);
+        newConnectionClient = newClient(false);
+    }
+
+    private PncHttpClient newClient(boolean keepAlive) {
+        return new PncHttpClient(
+                vertx,
+                new WebClientOptions().setDefaultHost("localhost")
+                        .setDefaultPort(server.getAddress().getPort())
+                        .setMaxPoolSize(32)
+                        .setKeepAlive(keepAlive),
+                new ObjectMapper(),
+                new PncConcurrencyLimiter(32, 1, 32, Duration.ofMinutes(1), 0.9, 0.25, Duration.ofMinutes(1)),
+                100,
+                4,
+                Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    public void stop() {
+        client.close();
+        newConnectionClient.close();
+        vertx.closeAndAwait();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private static String query(int i) {
+        return "purl==\"pkg:maven/org.example/example@1.0." + i + "\"";
+    }
+
+    private long sequential(int calls) {
+        return sequential(client, calls);
+    }
+
+    private long sequential(PncHttpClient client, int calls) {
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            client.getArtifacts(query(i)).await().indefinitely();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long concurrent(int calls) {
+        long start = System.nanoTime();
+        List<Uni<List<Artifact>>> lookups = new ArrayList<>(calls);
+        for (int i = 0; i < calls; i++) {
+            lookups.add(client.getArtifacts(query(i)));
+        }
+        Uni.join().all(lookups).andFailFast().await().indefinitely();
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void benchmarkClients() {
+        sequential(WARMUP);
+        concurrent(WARMUP);
+
+        double sequential = sequential(CALLS) / 1_000_000.0;
+        double concurrent = concurrent(CALLS) / 1_000_000.0;
+
+        log.info(
+                "{} artifact lookups took {} ms one after the other, {} ms all at once",
+                CALLS,
+                sequential,
+                concurrent);
+        assertTrue(concurrent < sequential);
+    }
+
+    @Test
+    public void benchmarkConnectionReuse() {
+        sequential(client, WARMUP);
+        sequential(newConnectionClient, WARMUP);
+
+        clientPorts.clear();
+        double keepAlive = sequential(client, CALLS) / 1_000_000.0;
+        int keepAliveConnections = clientPorts.size();
+
+        clientPorts.clear();
+        double newConnections = sequential(newConnectionClient, CALLS) / 1_000_000.0;
+        int newConnectionsConnections = clientPorts.size();
+
+        log.info(
+                "{} artifact lookups took {} ms over {} kept-alive connection(s), {} ms over {} new connections",
+                CALLS,
+                keepAlive,
+                keepAliveConnections,
+                newConnections,
+                newConnectionsConnections);
+
+        // The sequential lookups of the client reuse a single connection
+        assertEquals(1, keepAliveConnections);
+        assertEquals(CALLS, newConnectionsConnections);
+        assertTrue(keepAlive < newConnections);
+    }
+
+}
@@ -19,8 +19,10 @@ package org.redhat.sbomer.test;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.with;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.io.IOException;
+import java.time.Instant;
 
 import org.hamcrest.CoreMatchers;
 import org.junit.jupiter.api.Test;
@@ -31,6 +33,8 @@ import io.restassured.http.ContentType;
 @QuarkusTest
 public class SBOMResourceTest {
 
+    private static final String ADMIN_TOKEN = "test-admin-token";
+
     @Test
     public void testExistenceOfSbomsEndpoint() {
         given().when().get("/api/v1alpha1/sboms").then().statusCode(200);
@@ -70,4 +74,161 @@ public class SBOMResourceTest {
                                 "sbom: not a valid CycloneDX object: bom.specVersion: is missing but it is required, bom.specVdersion: is not defined in the schema and the schema does not allow additional properties"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testAsyncEnrichmentOfMissingSbom() {
+        given().when()
+                .contentType(ContentType.JSON)
+                .post("/api/v1alpha1/sboms/enrich/I_DO_NOT_EXIST?async=true")
+                .then()
+                .statusCode(404);
+    }
+
+    @Test
+    public void testAsyncEnrichment() throws InterruptedException {
+        String jobId = given().when()
+                .contentType(ContentType.JSON)
+                .post("/api/v1alpha1/sboms/enrich/ARYT3LBXDVYAC?async=true")
+                .then()
+                .statusCode(202)
+                .body("status", CoreMatchers.is("QUEUED"))
+                .extract()
+                .path("id");
+
+        Instant deadline = Instant.now().plusSeconds(60);
+        String status = null;
+
+        while (Instant.now().isBefore(deadline)) {
+            status = given().when()
+                    .get("/api/v1alpha1/sboms/enrich/jobs/" + jobId)
+                    .then()
+                    .statusCode(200)
+                    .extract()
+                    .path("status");
+
+            if ("FINISHED".equals(status) || "FAILED".equals(status)) {
+                break;
+            }
+
+            Thread.sleep(100);
+        }
+
+        assertEquals("FINISHED", status);
+
+        given().when()
+                .get("/api/v1alpha1/sboms/enrich/jobs/" + jobId)
+                .then()
+                .statusCode(200)
+                .body("stage", CoreMatchers.nullValue())
+                .body("reason", CoreMatchers.nullValue())
+                .body("componentCount", CoreMatchers.notNullValue())
+                .body("rhComponentCount", CoreMatchers.notNullValue())
+                .body("endTime", CoreMatchers.notNullValue());
+    }
+
+    @Test
+    public void testMissingEnrichmentJob() {
+        given().when().get("/api/v1alpha1/sboms/enrich/jobs/12345").then().statusCode(404);
+        given().when().get("/api/v1alpha1/sboms/enrich/jobs/not-a-number").then().statusCode(404);
+    }
+
+    @Test
+    public void testPurgeArtifactMisses() {
+        given().when()
+                .auth()
+                .oauth2(ADMIN_TOKEN)
+                .queryParam("purl", "pkg:maven/i.do.not/exist@0.0.0?type=jar")
+                .delete("/api/v1alpha1/artifacts/misses")
+                .then()
+                .statusCode(200)
+                .body("purged", CoreMatchers.notNullValue());
+    }
+
+    @Test
+    public void testPurgeArtifactMissesRequiresAdminToken() {
+        given().when().delete("/api/v1alpha1/artifacts/misses").then().statusCode(401);
+        given().when()
+                .auth()
+                .oauth2("not-the-admin-token")
+                .delete("/api/v1alpha1/artifacts/misses")
+                .then()
+                .statusCode(401);
+    }
+
+    @Test
+    public void testListArtifactsOfBuild() {
+        given().when()
+                .get("/api/v1alpha1/artifacts/builds/AVOBVY3O23YAA")
+                .then()
+                .statusCode(200)
+                .body("info.buildId", CoreMatchers.everyItem(CoreMatchers.is("AVOBVY3O23YAA")));
+    }
+
+    @Test
+    public void testImportAndExportArtifacts() {
+        String records = "{\"purl\":\"pkg:maven/org.example/imported@1.0.0.redhat-00001?type=jar\","
+                + "\"identifier\":\"org.example:imported:jar:1.0.0.redhat-00001\",\"buildId\":\"IMPORTBUILD01\","
+                + "\"scmUrl\":\"https://example.com/imported.git\"}\n" + "{\"identifier\":\"no-purl\"}\n";
+
+        with().body(records)
+                .when()
+                .auth()
+                .oauth2(ADMIN_TOKEN)
+                .contentType("application/x-ndjson")
+                .request("POST", "/api/v1alpha1/artifacts/import")
+                .then()
+                .statusCode(200)
+                .body("imported", CoreMatchers.is(1))
+                .body("rejected", CoreMatchers.is(1));
+
+        given().when()
+                .get("/api/v1alpha1/artifacts/builds/IMPORTBUILD01")
+                .then()
+                .statusCode(200)
+                .body("info.scmUrl", CoreMatchers.hasItem("https://example.com/imported.git"));
+
+        given().when()
+                .get("/api/v1alpha1/artifacts/export")
+                .then()
+                .statusCode(200)
+                .contentType("application/x-ndjson")
+                .body(CoreMatchers.containsString("pkg:maven/org.example/imported@1.0.0.redhat-00001?type=jar"))
+                .body(CoreMatchers.containsString("AVOBVY3O23YAA"));
+    }
+
+    @Test
+    public void testImportArtifactsRejectsMalformedRecords() {
+        String records = "{\"purl\":\"pkg:maven/org.example/mixed-first@1.0.0.redhat-00001?type=jar\"}\n"
+                + "{\"purl\": \"pkg:maven/org.example/truncated@1.0.0\n" + "not json at all\n" + "\n"
+                + "{\"purl\":\"pkg:maven/org.example/mixed-second@1.0.0.redhat-00001?type=jar\"}\n"
+                + "[\"an\", \"array\"]\n";
+
+        with().body(records)
+                .when()
+                .auth()
+                .oauth2(ADMIN_TOKEN)
+                .contentType("application/x-ndjson")
+                .request("POST", "/api/v1alpha1/artifacts/import")
+                .then()
+                .statusCode(200)
+                .body("imported", CoreMatchers.is(2))
+                .body("rejected", CoreMatchers.is(3));
+
+        given().when()
+                .get("/api/v1alpha1/artifacts/export")
+                .then()
+                .statusCode(200)
+                .body(CoreMatchers.containsString("pkg:maven/org.example/mixed-first@1.0.0.redhat-00001?type=jar"))
+                .body(CoreMatchers.containsString("pkg:maven/org.example/mixed-second@1.0.0.redhat-00001?type=jar"));
+    }
+
+    @Test
+    public void testImportArtifactsRequiresAdminToken() {
+        with().body("{\"purl\":\"pkg:maven/org.example/unauthorized@1.0.0?type=jar\"}\n")
+                .when()
+                .contentType("application/x-ndjson")
+                .request("POST", "/api/v1alpha1/artifacts/import")
+                .then()
+                .statusCode(401);
+    }
+
+}
@@ -18,6 +18,7 @@
 package org.redhat.sbomer.test;
 
 import java.io.IOException;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -35,6 +36,7 @@ import io.quarkus.arc.Priority;
 import io.quarkus.logging.Log;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Priority(1)
 @Alternative
@@ -44,11 +46,10 @@ public class TestArtifactCacheRepository extends ArtifactCacheRepository {
 
     private ArtifactCache createArtifactCache() throws IOException {
         String info = TestResources.asString("sboms/artifact-info.json");
-        JsonNode artifactInfoNode = JsonUtils.fromJson(info, JsonNode.class);
-        ArtifactCache artifactCache = new ArtifactCache();
-        artifactCache.setPurl("pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar");
+        ArtifactInfo artifactInfo = JsonUtils.fromJson(info, ArtifactInfo.class);
+        ArtifactCache artifactCache = ArtifactCache
+                .of("pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar", artifactInfo);
         artifactCache.setId(516640206274228224L);
-        artifactCache.setInfo(artifactInfoNode);
         return artifactCache;
     }
 
@@ -71,13 +72,21 @@ public class TestArtifactCacheRepository extends ArtifactCacheRepository {
                 "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar",
                 artifactCache.getPurl());
 
-        JsonNode artifactInfoNode = JsonUtils.fromJson(artifactCache.getInfo().asText(), JsonNode.class);
-        String md5 = artifactInfoNode.path("md5").asText();
-        String sha256 = artifactInfoNode.path("sha256").asText();
-        String buildId = artifactInfoNode.path("buildId").asText();
-        assertEquals("493ac341ddf64842497573deca9bee8c", md5);
-        assertEquals("75efe10bfb9d1e96c320ab9ca9daddc2aebfcc9d017be651f60cb41ed100f23f", sha256);
-        assertEquals("AVOBVY3O23YAA", buildId);
+        assertEquals("493ac341ddf64842497573deca9bee8c", artifactCache.getMd5());
+        assertEquals("75efe10bfb9d1e96c320ab9ca9daddc2aebfcc9d017be651f60cb41ed100f23f", artifactCache.getSha256());
+        assertEquals("AVOBVY3O23YAA", artifactCache.getBuild().getId());
+        assertEquals(
+                "quay.io/rh-newcastle/builder-rhel-8-j8-mvn3.5.4-netty-tcnative:1.0.2",
+                artifactCache.getBuild().getEnvironmentImage());
+    }
+
+    @Test
+    public void testGetArtifactCachesOfBuild() {
+        List<ArtifactCache> artifactCaches = getArtifactCachesOfBuild("AVOBVY3O23YAA");
+        assertTrue(artifactCaches.stream().anyMatch(a -> a.getId() == 516640206274228224L));
+        assertTrue(artifactCaches.stream().allMatch(a -> a.getBuild().getId().equals("AVOBVY3O23YAA")));
+
+        assertTrue(getArtifactCachesOfBuild("I_DO_NOT_EXIST").isEmpty());
     }
 
     @Test
@@ -89,7 +98,7 @@ public class TestArtifactCacheRepository extends ArtifactCacheRepository {
                 "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar",
                 artifactCache.getPurl());
 
-        ArtifactInfo artifactInfo = JsonUtils.fromJson(artifactCache.getInfo().asText(), ArtifactInfo.class);
+        ArtifactInfo artifactInfo = artifactCache.toArtifactInfo();
         assertEquals("493ac341ddf64842497573deca9bee8c", artifactInfo.getMd5());
         assertEquals("75efe10bfb9d1e96c320ab9ca9daddc2aebfcc9d017be651f60cb41ed100f23f", artifactInfo.getSha256());
         assertEquals("AVOBVY3O23YAA", artifactInfo.getBuildId());
@@ -104,4 +113,28 @@ public class TestArtifactCacheRepository extends ArtifactCacheRepository {
         assertEquals("AVOBVY3O23YAA", buildId);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSaveArtifactCachesOverwrite() {
+        String purl = "pkg:maven/org.example/overwritten@1.0.0.redhat-00001?type=jar";
+        ArtifactInfo original = ArtifactInfo.builder().purl(purl).identifier("original").md5("original").build();
+        upsertArtifactInfos(List.of(original));
+
+        // Managed by the persistence context of the test transaction
+        ArtifactCache stored = getArtifactCache(purl);
+        assertEquals("original", stored.getIdentifier());
+
+        ArtifactInfo changed = original.toBuilder().identifier("changed").md5("changed").build();
+
+        List<ArtifactCache> kept = saveArtifactCaches(List.of(ArtifactCache.of(purl, changed)), false);
+        assertEquals(1, kept.size());
+        assertEquals(stored.getId(), kept.get(0).getId());
+        assertEquals("original", kept.get(0).getIdentifier());
+
+        List<ArtifactCache> replaced = saveArtifactCaches(List.of(ArtifactCache.of(purl, changed)), true);
+        assertEquals(1, replaced.size());
+        assertEquals(stored.getId(), replaced.get(0).getId());
+        assertEquals("changed", replaced.get(0).getIdentifier());
+        assertEquals("changed", getArtifactCache(purl).getMd5());
+    }
+
+}
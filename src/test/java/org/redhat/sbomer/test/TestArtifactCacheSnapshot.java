@@ -0,0 +1,155 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.utils.ArtifactCacheSnapshot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestArtifactCacheSnapshot {
+
+    @TempDir
+    Path directory;
+
+    private static ArtifactCache artifact(int i) {
+        String purl = "pkg:maven/org.example/example-" + i + "@1.0.0.redhat-0000" + (i % 10) + "?type=jar";
+        return ArtifactCache.builder()
+                .id(String.valueOf(1000 + i))
+                .purl(purl)
+                .info(
+                        ArtifactInfo.builder()
+                                .purl(purl)
+                                .identifier("org.example:example-" + i + ":jar:1.0.0")
+                                .md5("md5-" + i)
+                                .sha256(i % 2 == 0 ? "sha256-" + i : null)
+                                .buildId("BUILD" + (i % 3))
+                                .scmUrl("https://example.com/\u00fcn\u00efcode-" + i + ".git")
+                                .buildSystem("PNC")
+                                .build())
+                .build();
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path path = directory.resolve("artifact-cache.snapshot");
+        Instant before = Instant.now().minusSeconds(1);
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(path)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.add(artifact(i));
+            }
+            assertEquals(1000, writer.commit());
+        }
+
+        ArtifactCacheSnapshot snapshot = ArtifactCacheSnapshot.open(path);
+        assertEquals(1000, snapshot.size());
+        assertTrue(snapshot.getCreationTime().isAfter(before));
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(artifact(i), snapshot.get(artifact(i).getPurl()));
+        }
+        assertNull(snapshot.get("pkg:maven/org.example/example-1000@1.0.0?type=jar"));
+
+        // Only the snapshot is left in the directory
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testCreationTimeIsBeforeTheArtifacts() throws IOException, InterruptedException {
+        Path path = directory.resolve("artifact-cache.snapshot");
+        Instant added;
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(path)) {
+            Thread.sleep(50);
+            added = Instant.now();
+            writer.add(artifact(0));
+            Thread.sleep(50);
+            writer.commit();
+        }
+
+        // Artifacts stored while the snapshot was written are considered changed since its creation
+        assertTrue(ArtifactCacheSnapshot.open(path).getCreationTime().isBefore(added));
+    }
+
+    @Test
+    public void testReplacedAtomically() throws IOException {
+        Path path = directory.resolve("artifact-cache.snapshot");
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(path)) {
+            writer.add(artifact(0));
+            writer.commit();
+        }
+        ArtifactCacheSnapshot previous = ArtifactCacheSnapshot.open(path);
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(path)) {
+            writer.add(artifact(1));
+            writer.commit();
+        }
+
+        // The previous snapshot, mapped by a reader, is left intact by the rename
+        assertEquals(artifact(0), previous.get(artifact(0).getPurl()));
+        assertNull(ArtifactCacheSnapshot.open(path).get(artifact(0).getPurl()));
+        assertEquals(artifact(1), ArtifactCacheSnapshot.open(path).get(artifact(1).getPurl()));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path path = directory.resolve("artifact-cache.snapshot");
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(path)) {
+            assertEquals(0, writer.commit());
+        }
+
+        assertNull(ArtifactCacheSnapshot.open(path).get(artifact(0).getPurl()));
+    }
+
+    @Test
+    public void testNotCommitted() throws IOException {
+        Path path = directory.resolve("artifact-cache.snapshot");
+
+        try (ArtifactCacheSnapshot.Writer writer = ArtifactCacheSnapshot.writer(path)) {
+            writer.add(artifact(0));
+        }
+
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        Path path = directory.resolve("artifact-cache.snapshot");
+        Files.writeString(path, "not a snapshot, but long enough for a header");
+
+        assertThrows(IOException.class, () -> ArtifactCacheSnapshot.open(path));
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.dto.ArtifactCache;
+import org.redhat.sbomer.service.ArtifactLookupBatcher;
+import org.redhat.sbomer.test.mock.PncServiceMock;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Looks up pairs of purls concurrently with batches closed only once they hold two purls, so that both purls of a
+ * pair are provably resolved together. A lookup which is not batched waits for the (long) window and times out.
+ */
+@QuarkusTest
+@TestProfile(TestArtifactLookupBatcher.PairsProfile.class)
+@Slf4j
+public class TestArtifactLookupBatcher {
+
+    private static final int MAX_BATCH_SIZE = 2;
+
+    public static class PairsProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                    "sbomer.enrichment.batching.max-batch-size",
+                    String.valueOf(MAX_BATCH_SIZE),
+                    "sbomer.enrichment.batching.window",
+                    "5m");
+        }
+    }
+
+    @Inject
+    ArtifactLookupBatcher artifactLookupBatcher;
+
+    @Inject
+    PncServiceMock pncServiceMock;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Test
+    public void testResolvesDistinctPurlsTogether() throws Exception {
+        log.info("testResolvesDistinctPurlsTogether ...");
+
+        // Never cached before, so that PNC is asked for them
+        String purl = PncServiceMock.generatedPurl("batched");
+        String missingPurl = "pkg:maven/org.example.missing/batched@1.0.0-" + UUID.randomUUID() + "?type=jar";
+        DistributionSummary batchSizes = meterRegistry.get("sbomer.artifact.lookup.batch.size").summary();
+        long batches = batchSizes.count();
+        double batched = batchSizes.totalAmount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_BATCH_SIZE);
+        try {
+            Future<ArtifactCache> found = executor.submit(() -> artifactLookupBatcher.resolve(purl));
+            Future<ArtifactCache> missing = executor.submit(() -> artifactLookupBatcher.resolve(missingPurl));
+
+            // Every caller gets the result of its own purl
+            assertEquals(purl, found.get(30, TimeUnit.SECONDS).getPurl());
+            assertNull(missing.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Both purls were resolved with a single batch, and a single PNC query
+        assertEquals(batches + 1, batchSizes.count());
+        assertEquals(batched + MAX_BATCH_SIZE, batchSizes.totalAmount());
+        assertEquals(List.of(Set.of(purl, missingPurl)), pncServiceMock.getArtifactQueriesOf(purl));
+    }
+
+    @Test
+    public void testIsolatesFailingPurlsOfBatch() throws Exception {
+        log.info("testIsolatesFailingPurlsOfBatch ...");
+
+        String purl = PncServiceMock.generatedPurl("isolated");
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_BATCH_SIZE);
+        try {
+            Future<ArtifactCache> found = executor.submit(() -> artifactLookupBatcher.resolve(purl));
+            Future<ArtifactCache> failing = executor
+                    .submit(() -> artifactLookupBatcher.resolve(PncServiceMock.FAILING_PURL));
+
+            // The failing purl fails its own lookup only
+            assertEquals(purl, found.get(30, TimeUnit.SECONDS).getPurl());
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> failing.get(30, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Queried along with the failing purl first, and then alone
+        List<Set<String>> queries = pncServiceMock.getArtifactQueriesOf(purl);
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(0).contains(PncServiceMock.FAILING_PURL));
+        assertEquals(Set.of(purl), queries.get(1));
+    }
+
+}
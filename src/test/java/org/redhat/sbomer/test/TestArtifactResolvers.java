@@ -0,0 +1,116 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.time.Duration;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.repositories.ArtifactCacheMissRepository;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.service.SBOMService;
+import org.redhat.sbomer.test.mock.BrewArtifactResolverMock;
+import org.redhat.sbomer.test.mock.BrewResolverProfile;
+import org.redhat.sbomer.test.mock.PncServiceMock;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.TestProfile;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.redhat.sbomer.utils.Constants.BREW_BUILD_SYSTEM;
+import static org.redhat.sbomer.utils.Constants.PNC_BUILD_SYSTEM;
+
+/**
+ * Resolves the artifacts with both PNC and the {@link BrewArtifactResolverMock}.
+ */
+@QuarkusTest
+@TestProfile(BrewResolverProfile.class)
+@Slf4j
+public class TestArtifactResolvers {
+
+    private static final Duration PNC_DELAY = Duration.ofSeconds(1);
+
+    private static final Duration PNC_TIMEOUT = Duration.parse("PT" + BrewResolverProfile.PNC_TIMEOUT);
+
+    @Inject
+    SBOMService sbomService;
+
+    @Inject
+    PncServiceMock pncServiceMock;
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Inject
+    ArtifactCacheMissRepository artifactCacheMissRepository;
+
+    @AfterEach
+    public void resetPncDelay() {
+        pncServiceMock.setArtifactQueryDelay(Duration.ZERO);
+    }
+
+    @Test
+    public void testResolutionByBuildSystem() {
+        log.info("testResolutionByBuildSystem ...");
+
+        String pncPurl = "pkg:maven/com.beust/jcommander@1.72?type=jar";
+        assertEquals(PNC_BUILD_SYSTEM, sbomService.fetchArtifact(pncPurl).getArtifactInfo().getBuildSystem());
+
+        // Not known to PNC, answered by the other build system and recorded as such
+        String brewPurl = BrewArtifactResolverMock.BREW_PURL;
+        assertEquals(BREW_BUILD_SYSTEM, sbomService.fetchArtifact(brewPurl).getArtifactInfo().getBuildSystem());
+        assertEquals(BREW_BUILD_SYSTEM, artifactCacheRepository.getArtifactCache(brewPurl).getBuildSystem());
+        assertTrue(artifactCacheMissRepository.getValidMisses(List.of(brewPurl)).isEmpty());
+    }
+
+    @Test
+    public void testSlowPncAnswerIsPreferred() {
+        log.info("testSlowPncAnswerIsPreferred ...");
+
+        // Known to both, Brew answers first but PNC is authoritative and answers within its timeout
+        String purl = PncServiceMock.generatedPurl(BrewArtifactResolverMock.SHARED_PREFIX + "slow");
+        pncServiceMock.setArtifactQueryDelay(PNC_DELAY);
+
+        ArtifactInfo info = sbomService.fetchArtifact(purl).getArtifactInfo();
+        assertEquals(PNC_BUILD_SYSTEM, info.getBuildSystem());
+        assertEquals(PNC_BUILD_SYSTEM, artifactCacheRepository.getArtifactCache(purl).getBuildSystem());
+    }
+
+    @Test
+    public void testBrewAnswerDoesNotWaitForPncTimeout() {
+        log.info("testBrewAnswerDoesNotWaitForPncTimeout ...");
+
+        // Unknown to PNC, returned as soon as PNC answered without it
+        String purl = BrewArtifactResolverMock.brewPurl("slow-pnc");
+        pncServiceMock.setArtifactQueryDelay(PNC_DELAY);
+
+        long start = System.nanoTime();
+        ArtifactInfo info = sbomService.fetchArtifact(purl).getArtifactInfo();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertEquals(BREW_BUILD_SYSTEM, info.getBuildSystem());
+        assertTrue(elapsed.compareTo(PNC_TIMEOUT) < 0, "Brew answer took " + elapsed);
+    }
+
+}
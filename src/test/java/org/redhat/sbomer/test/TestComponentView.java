@@ -0,0 +1,109 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cyclonedx.model.Component;
+import org.cyclonedx.model.ExternalReference;
+import org.cyclonedx.model.Hash;
+import org.cyclonedx.model.Hash.Algorithm;
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.utils.ComponentView;
+import org.redhat.sbomer.utils.Constants;
+import org.redhat.sbomer.utils.SbomUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_ID;
+
+public class TestComponentView {
+
+    @Test
+    public void testAddIfMissing() {
+        Component component = new Component();
+        component.setHashes(new ArrayList<>(List.of(new Hash("md5", "abc"))));
+        component.setProperties(new ArrayList<>());
+        SbomUtils.addProperty(component.getProperties(), SBOM_RED_HAT_BUILD_ID.toUpperCase(), "1234");
+
+        ComponentView view = ComponentView.of(component);
+
+        assertTrue(view.hasHash(Algorithm.MD5));
+        assertFalse(view.addHashIfMissing(Algorithm.MD5, "def"));
+        assertFalse(view.addHashIfMissing(Algorithm.SHA1, null));
+        assertTrue(view.addHashIfMissing(Algorithm.SHA1, "def"));
+        assertTrue(view.hasHash(Algorithm.SHA1));
+        assertEquals(2, component.getHashes().size());
+
+        assertTrue(view.hasProperty(SBOM_RED_HAT_BUILD_ID));
+        assertFalse(view.addPropertyIfMissing(SBOM_RED_HAT_BUILD_ID, "5678"));
+        assertTrue(view.addPropertyIfMissing(Constants.SBOM_RED_HAT_SCM_TAG, null));
+        assertFalse(view.addPropertyIfMissing(Constants.SBOM_RED_HAT_SCM_TAG, "tag"));
+        assertEquals(2, component.getProperties().size());
+        assertEquals("", component.getProperties().get(1).getValue());
+    }
+
+    @Test
+    public void testRemoveProperty() {
+        Component component = new Component();
+        ComponentView view = ComponentView.of(component);
+        view.putProperty(SBOM_RED_HAT_BUILD_ID, "1234");
+        view.putProperty(Constants.SBOM_RED_HAT_SCM_TAG, "tag");
+
+        assertTrue(view.removeProperty(SBOM_RED_HAT_BUILD_ID.toUpperCase()));
+        assertFalse(view.removeProperty(SBOM_RED_HAT_BUILD_ID));
+        assertFalse(view.hasProperty(SBOM_RED_HAT_BUILD_ID));
+        assertEquals(1, component.getProperties().size());
+        assertTrue(view.addPropertyIfMissing(SBOM_RED_HAT_BUILD_ID, "5678"));
+    }
+
+    @Test
+    public void testMissingLists() {
+        Component component = new Component();
+
+        ComponentView view = ComponentView.of(component);
+        view.addPropertyIfMissing(SBOM_RED_HAT_BUILD_ID, "1234");
+        view.addMrrc();
+
+        assertEquals(1, component.getProperties().size());
+        assertEquals(Constants.PUBLISHER, component.getPublisher());
+        assertEquals(1, component.getExternalReferences().size());
+        assertEquals(Constants.MRRC_URL, component.getExternalReferences().get(0).getUrl());
+    }
+
+    @Test
+    public void testAddMrrcUpdatesExistingDistribution() {
+        ExternalReference dist = new ExternalReference();
+        dist.setType(ExternalReference.Type.DISTRIBUTION);
+        dist.setUrl("https://repo1.maven.org/maven2");
+
+        Component component = new Component();
+        component.setExternalReferences(new ArrayList<>(List.of(dist)));
+        List<ExternalReference> refs = component.getExternalReferences();
+
+        ComponentView.of(component).addMrrc();
+
+        assertSame(refs, component.getExternalReferences());
+        assertEquals(1, refs.size());
+        assertEquals(Constants.MRRC_URL, dist.getUrl());
+    }
+
+}
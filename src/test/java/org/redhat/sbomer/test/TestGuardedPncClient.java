@@ -0,0 +1,150 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.eclipse.microprofile.faulttolerance.exceptions.CircuitBreakerOpenException;
+import org.jboss.pnc.dto.Build;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.errors.PncUnavailableException;
+import org.redhat.sbomer.service.GuardedPncClient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs the guarded PNC operations against a fake PNC, with short retry delays and a small circuit breaker window.
+ */
+@QuarkusTest
+@TestProfile(TestGuardedPncClient.FakePncProfile.class)
+public class TestGuardedPncClient {
+
+    private static final int PORT = 18182;
+
+    private static final int MAX_RETRIES = 3;
+
+    private static final int REQUEST_VOLUME_THRESHOLD = 4;
+
+    /**
+     * Number of failed requests before the fake PNC returns the build.
+     */
+    private static final int BUILD_FAILURES = 2;
+
+    private static final AtomicInteger buildRequests = new AtomicInteger();
+
+    private static final AtomicInteger artifactRequests = new AtomicInteger();
+
+    private static HttpServer server;
+
+    public static class FakePncProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            String guarded = GuardedPncClient.class.getName();
+            return Map.of(
+                    "sbomer.pnc.host",
+                    "localhost",
+                    "sbomer.pnc.port",
+                    String.valueOf(PORT),
+                    "sbomer.pnc.protocol",
+                    "http",
+                    guarded + "/Retry/maxRetries",
+                    String.valueOf(MAX_RETRIES),
+                    guarded + "/Retry/delay",
+                    "10",
+                    guarded + "/Retry/jitter",
+                    "0",
+                    guarded + "/CircuitBreaker/requestVolumeThreshold",
+                    String.valueOf(REQUEST_VOLUME_THRESHOLD));
+        }
+    }
+
+    @Inject
+    GuardedPncClient client;
+
+    @BeforeAll
+    public static void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        server.createContext("/pnc-rest/v2/builds/", exchange -> {
+            if (buildRequests.incrementAndGet() <= BUILD_FAILURES) {
+                respond(exchange, 503, "");
+            } else {
+                respond(exchange, 200, "{\"id\":\"1\"}");
+            }
+        });
+        // PNC is down for the artifacts
+        server.createContext("/pnc-rest/v2/artifacts", exchange -> {
+            artifactRequests.incrementAndGet();
+            respond(exchange, 503, "");
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() {
+        Build build = client.getBuild("1").await().indefinitely();
+
+        assertEquals("1", build.getId());
+        assertEquals(BUILD_FAILURES + 1, buildRequests.get());
+    }
+
+    @Test
+    public void testCircuitBreakerOpensWhileFailing() {
+        List<String> purls = List.of("pkg:maven/org.example/down@1.0.0?type=jar");
+
+        // Every attempt fails, the last one fills the window of the circuit breaker
+        assertThrows(PncUnavailableException.class, () -> client.getArtifacts(purls).await().indefinitely());
+        assertEquals(MAX_RETRIES + 1, artifactRequests.get());
+
+        // Fails fast, without reaching PNC
+        assertThrows(CircuitBreakerOpenException.class, () -> client.getArtifacts(purls).await().indefinitely());
+        assertEquals(MAX_RETRIES + 1, artifactRequests.get());
+    }
+
+}
@@ -0,0 +1,212 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.model.ArtifactCache;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.utils.PurlUtils;
+
+import io.agroal.api.AgroalDataSource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import lombok.extern.slf4j.Slf4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Flyway migrations against a PostgreSQL database (started by the Quarkus Dev Services, which need Docker or
+ * Podman), and lets Hibernate validate the entity mappings against the migrated schema. Run with
+ * {@code mvn test -Dtest=TestMigrations -Dsbomer.test.migrations=true}.
+ */
+@QuarkusTest
+@TestProfile(TestMigrations.PostgresqlProfile.class)
+@EnabledIfSystemProperty(named = "sbomer.test.migrations", matches = "true")
+@Slf4j
+public class TestMigrations {
+
+    /**
+     * Schema migrated step by step from the schema before the artifact cache was split in typed columns.
+     */
+    private static final String PRE_SERIES_SCHEMA = "pre_series";
+
+    private static final String BUILD_ID = "AX5TJMYHQAIAE";
+
+    public static class PostgresqlProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            // An empty JDBC URL lets the Dev Services start the database
+            return Map.of(
+                    "quarkus.devservices.enabled",
+                    "true",
+                    "quarkus.datasource.db-kind",
+                    "postgresql",
+                    "quarkus.datasource.jdbc.url",
+                    "",
+                    "quarkus.flyway.migrate-at-start",
+                    "true",
+                    "quarkus.hibernate-orm.database.generation",
+                    "validate");
+        }
+    }
+
+    @Inject
+    Flyway flyway;
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Test
+    public void testMigratedSchemaMatchesEntities() {
+        log.info("testMigratedSchemaMatchesEntities ...");
+
+        // The application started, so Hibernate validated the entities against the migrated schema
+        assertEquals(0, flyway.info().pending().length);
+        assertNotNull(flyway.info().current());
+
+        // The PostgreSQL upserts rely on the unique key on the purl hash and the purl
+        String purl = "pkg:maven/org.example.migrations/upserted@1.0.0.redhat-00001?type=jar";
+        ArtifactInfo info = ArtifactInfo.builder()
+                .purl(purl)
+                .identifier("org.example.migrations:upserted:jar:1.0.0.redhat-00001")
+                .buildId(BUILD_ID)
+                .scmUrl("https://code.example.com/upserted.git")
+                .buildSystem("PNC")
+                .build();
+        String sha256 = String.format("%064x", 1);
+        artifactCacheRepository.upsertArtifactInfos(List.of(info));
+        artifactCacheRepository.upsertArtifactInfos(List.of(info.toBuilder().sha256(sha256).build()));
+
+        ArtifactCache artifactCache = artifactCacheRepository.getArtifactCache(purl);
+        assertEquals(sha256, artifactCache.getSha256());
+        assertEquals(BUILD_ID, artifactCache.getBuild().getId());
+    }
+
+    @Test
+    public void testMigratesPreSeriesArtifacts() throws SQLException {
+        log.info("testMigratesPreSeriesArtifacts ...");
+
+        String objectPurl = "pkg:maven/org.example.migrations/object@1.0.0.redhat-00001?type=jar";
+        String stringPurl = "pkg:maven/org.example.migrations/string@1.0.0.redhat-00001?type=jar";
+        String brokenPurl = "pkg:maven/org.example.migrations/broken@1.0.0.redhat-00001?type=jar";
+
+        try {
+            migrate("1.0.0");
+
+            try (Connection connection = dataSource.getConnection();
+                    PreparedStatement statement = connection.prepareStatement(
+                            "INSERT INTO " + PRE_SERIES_SCHEMA + ".artifact_cache (id, purl, info) VALUES (?, ?, ?)")) {
+                // The info column was written as a JSON object, or as a JSON string holding the object
+                statement.setLong(1, 1);
+                statement.setString(2, objectPurl);
+                statement.setObject(3, preSeriesInfo(objectPurl), Types.OTHER);
+                statement.addBatch();
+                statement.setLong(1, 2);
+                statement.setString(2, stringPurl);
+                statement.setObject(3, jsonString(preSeriesInfo(stringPurl)), Types.OTHER);
+                statement.addBatch();
+                statement.setLong(1, 3);
+                statement.setString(2, brokenPurl);
+                statement.setObject(3, jsonString("{\"identifier\":"), Types.OTHER);
+                statement.addBatch();
+                statement.executeBatch();
+            }
+
+            migrate(null);
+
+            try (Connection connection = dataSource.getConnection();
+                    Statement statement = connection.createStatement()) {
+                try (ResultSet rs = statement.executeQuery(
+                        "SELECT purl, purl_hash, identifier, build_system, build_id, fetched_at, last_accessed FROM "
+                                + PRE_SERIES_SCHEMA + ".artifact_cache ORDER BY id")) {
+                    for (String purl : List.of(objectPurl, stringPurl)) {
+                        assertTrue(rs.next());
+                        assertEquals(purl, rs.getString("purl"));
+                        assertEquals(PurlUtils.hash(purl), rs.getLong("purl_hash"));
+                        assertEquals(purl.substring(purl.indexOf('/') + 1), rs.getString("identifier"));
+                        assertEquals("PNC", rs.getString("build_system"));
+                        assertEquals(BUILD_ID, rs.getString("build_id"));
+                        assertNotNull(rs.getTimestamp("fetched_at"));
+                        assertNotNull(rs.getTimestamp("last_accessed"));
+                    }
+                    // The information which could not be parsed is fetched again
+                    assertFalse(rs.next());
+                }
+
+                try (ResultSet rs = statement.executeQuery(
+                        "SELECT scm_url, environment_image FROM " + PRE_SERIES_SCHEMA + ".pnc_build")) {
+                    assertTrue(rs.next());
+                    assertEquals("https://code.example.com/migrations.git", rs.getString("scm_url"));
+                    assertNull(rs.getString("environment_image"));
+                    assertFalse(rs.next());
+                }
+            }
+        } finally {
+            try (Connection connection = dataSource.getConnection();
+                    Statement statement = connection.createStatement()) {
+                statement.execute("DROP SCHEMA IF EXISTS " + PRE_SERIES_SCHEMA + " CASCADE");
+            }
+        }
+    }
+
+    /**
+     * Migrates the {@link #PRE_SERIES_SCHEMA} up to the provided version, or to the latest one.
+     */
+    private void migrate(String target) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(PRE_SERIES_SCHEMA)
+                .locations("classpath:db/migration")
+                .target(target != null ? target : "latest")
+                .load()
+                .migrate();
+    }
+
+    private static String preSeriesInfo(String purl) {
+        return "{\"purl\":\"" + purl + "\",\"identifier\":\"" + purl.substring(purl.indexOf('/') + 1)
+                + "\",\"buildId\":\"" + BUILD_ID + "\",\"scmUrl\":\"https://code.example.com/migrations.git\"}";
+    }
+
+    private static String jsonString(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+}
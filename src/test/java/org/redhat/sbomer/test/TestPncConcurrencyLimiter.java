@@ -0,0 +1,226 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.errors.PncUnavailableException;
+import org.redhat.sbomer.service.PncConcurrencyLimiter;
+import org.redhat.sbomer.service.PncConcurrencyLimiter.Priority;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPncConcurrencyLimiter {
+
+    private static PncConcurrencyLimiter limiter(int initialLimit, Duration latencyThreshold, Duration maxWait) {
+        return new PncConcurrencyLimiter(initialLimit, 1, 16, latencyThreshold, 0.5, 0.25, maxWait);
+    }
+
+    private static <R> R join(CompletionStage<R> stage) throws Exception {
+        return stage.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private static Throwable failure(CompletionStage<?> stage) {
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> join(stage));
+        return ex.getCause();
+    }
+
+    @Test
+    public void testLowersLimitOnFailures() {
+        PncConcurrencyLimiter limiter = limiter(8, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        Throwable unavailable = failure(
+                limiter.execute(
+                        Priority.BULK,
+                        () -> CompletableFuture.failedFuture(new PncUnavailableException("Unavailable"))));
+        assertInstanceOf(PncUnavailableException.class, unavailable);
+        assertEquals(4, limiter.getLimit());
+
+        failure(
+                limiter.execute(
+                        Priority.BULK,
+                        () -> CompletableFuture.failedFuture(new IllegalStateException("Connection reset"))));
+        assertEquals(2, limiter.getLimit());
+
+        // PNC answered, the build just does not exist
+        failure(
+                limiter.execute(
+                        Priority.INTERACTIVE,
+                        () -> CompletableFuture.failedFuture(new ApplicationException("Build was not found"))));
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLowersLimitOncePerBurstOfFailures() {
+        PncConcurrencyLimiter limiter = new PncConcurrencyLimiter(
+                32,
+                1,
+                32,
+                Duration.ofMinutes(1),
+                0.9,
+                0.25,
+                Duration.ofSeconds(1));
+        CompletableFuture<Boolean> timeout = new CompletableFuture<>();
+
+        // All the calls in flight time out together
+        List<CompletionStage<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            calls.add(limiter.execute(Priority.INTERACTIVE, () -> timeout));
+        }
+        assertEquals(32, limiter.getInFlight());
+        timeout.completeExceptionally(new PncUnavailableException("Timed out"));
+        calls.forEach(TestPncConcurrencyLimiter::failure);
+
+        assertEquals(28, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        // A call sent under the lowered limit lowers it again
+        failure(
+                limiter.execute(
+                        Priority.INTERACTIVE,
+                        () -> CompletableFuture.failedFuture(new PncUnavailableException("Timed out"))));
+        assertEquals(25, limiter.getLimit());
+    }
+
+    @Test
+    public void testKeepsLimitForAbandonedPermits() throws Exception {
+        PncConcurrencyLimiter limiter = limiter(8, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        // Never sent, says nothing about PNC
+        PncConcurrencyLimiter.Permit abandoned = join(limiter.acquire(Priority.BULK));
+        assertEquals(1, limiter.getInFlight());
+        abandoned.abandon();
+        abandoned.abandon();
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        // Sent and given up, like a dropped call
+        join(limiter.acquire(Priority.BULK)).cancel();
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLowersLimitOnSlowCalls() throws Exception {
+        PncConcurrencyLimiter limiter = limiter(8, Duration.ZERO, Duration.ofSeconds(1));
+
+        join(limiter.execute(Priority.BULK, () -> CompletableFuture.supplyAsync(() -> {
+            pause(5);
+            return null;
+        })));
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testRaisesLimitWhenUsed() throws Exception {
+        PncConcurrencyLimiter limiter = limiter(2, Duration.ofMinutes(1), Duration.ofSeconds(1));
+
+        // A single call at a time does not use the limit of 2 enough
+        for (int i = 0; i < 10; i++) {
+            join(limiter.execute(Priority.INTERACTIVE, () -> CompletableFuture.completedFuture("build")));
+        }
+        assertEquals(2, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++) {
+            CompletableFuture<String> first = new CompletableFuture<>();
+            CompletionStage<String> firstCall = limiter.execute(Priority.INTERACTIVE, () -> first);
+            CompletionStage<String> secondCall = limiter
+                    .execute(Priority.INTERACTIVE, () -> CompletableFuture.completedFuture("build"));
+            first.complete("build");
+            join(firstCall);
+            join(secondCall);
+        }
+        assertTrue(limiter.getLimit() > 2);
+    }
+
+    @Test
+    public void testReservesCapacityForInteractiveCalls() throws Exception {
+        PncConcurrencyLimiter limiter = limiter(4, Duration.ofMinutes(1), Duration.ofMillis(100));
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+
+        List<CompletionStage<Boolean>> bulk = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bulk.add(limiter.execute(Priority.BULK, () -> done));
+        }
+        assertEquals(3, limiter.getInFlight());
+
+        // The remaining permit is kept for interactive calls
+        assertInstanceOf(
+                PncUnavailableException.class,
+                failure(limiter.execute(Priority.BULK, () -> CompletableFuture.completedFuture(true))));
+        assertEquals(1, limiter.getRejections(Priority.BULK));
+        assertEquals(
+                "build",
+                join(limiter.execute(Priority.INTERACTIVE, () -> CompletableFuture.completedFuture("build"))));
+        assertEquals(0, limiter.getRejections(Priority.INTERACTIVE));
+
+        done.complete(true);
+        for (CompletionStage<Boolean> call : bulk) {
+            assertTrue(join(call));
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAdmitsWaitingInteractiveCallsFirst() throws Exception {
+        PncConcurrencyLimiter limiter = limiter(1, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        List<String> started = new ArrayList<>();
+
+        CompletionStage<Boolean> running = limiter.execute(Priority.BULK, () -> done);
+        CompletionStage<Boolean> bulk = limiter.execute(Priority.BULK, () -> {
+            started.add("bulk");
+            return CompletableFuture.completedFuture(true);
+        });
+        CompletionStage<Boolean> interactive = limiter.execute(Priority.INTERACTIVE, () -> {
+            started.add("interactive");
+            return CompletableFuture.completedFuture(true);
+        });
+        assertTrue(started.isEmpty());
+        assertFalse(bulk.toCompletableFuture().isDone());
+
+        done.complete(true);
+        join(running);
+        join(bulk);
+        join(interactive);
+        assertEquals(List.of("interactive", "bulk"), started);
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.jboss.pnc.dto.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.errors.PncUnavailableException;
+import org.redhat.sbomer.service.PncConcurrencyLimiter;
+import org.redhat.sbomer.service.PncHttpClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import io.smallrye.mutiny.TimeoutException;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestPncHttpClient {
+
+    private static final int PAGES = 12;
+
+    private static final int PAGE_SIZE = 3;
+
+    private static final int PREFETCH = 4;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final Pattern PAGE_INDEX = Pattern.compile("pageIndex=(\\d+)");
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final CountDownLatch hanging = new CountDownLatch(1);
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private Vertx vertx;
+
+    private PncConcurrencyLimiter limiter;
+
+    private PncHttpClient client;
+
+    @BeforeEach
+    public void start() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            Matcher matcher = PAGE_INDEX.matcher(exchange.getRequestURI().getRawQuery());
+            int pageIndex = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+            byte[] page = page(pageIndex).getBytes(StandardCharsets.UTF_8);
+
+            inFlight.decrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(page);
+            }
+        });
+        // PNC accepts the request, but never answers
+        server.createContext("/pnc-rest/v2/builds/", exchange -> {
+            try {
+                hanging.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        vertx = Vertx.vertx();
+        limiter = new PncConcurrencyLimiter(32, 1, 32, Duration.ofMinutes(1), 0.9, 0.25, Duration.ofMinutes(1));
+        client = new PncHttpClient(
+                vertx,
+                new WebClientOptions().setDefaultHost("localhost")
+                        .setDefaultPort(server.getAddress().getPort())
+                        .setMaxPoolSize(32),
+                new ObjectMapper(),
+                limiter,
+                PAGE_SIZE,
+                PREFETCH,
+                REQUEST_TIMEOUT);
+    }
+
+    @AfterEach
+    public void stop() {
+        hanging.countDown();
+        client.close();
+        vertx.closeAndAwait();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private static String page(int pageIndex) {
+        String content = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> "{\"id\":\"" + (pageIndex * PAGE_SIZE + i) + "\"}")
+                .collect(Collectors.joining(","));
+        return "{\"pageIndex\":" + pageIndex + ",\"pageSize\":" + PAGE_SIZE + ",\"totalPages\":" + PAGES
+                + ",\"totalHits\":" + PAGES * PAGE_SIZE + ",\"content\":[" + content + "]}";
+    }
+
+    @Test
+    public void testPagesArePrefetched() {
+        List<Artifact> artifacts = client.getArtifacts("purl==\"pkg:maven/org.example/example@1.0.0\"")
+                .await()
+                .atMost(Duration.ofSeconds(30));
+
+        Set<String> ids = artifacts.stream().map(Artifact::getId).collect(Collectors.toSet());
+        assertEquals(PAGES * PAGE_SIZE, artifacts.size());
+        assertEquals(PAGES * PAGE_SIZE, ids.size());
+        assertEquals(PAGES, requests.get());
+        assertTrue(maxInFlight.get() > 1, "Pages were not fetched concurrently");
+        assertTrue(maxInFlight.get() <= PREFETCH, "More pages than the prefetch were fetched at once");
+    }
+
+    @Test
+    public void testStreamIsBackpressured() {
+        List<Artifact> artifacts = client.streamArtifacts("purl==\"pkg:maven/org.example/example@1.0.0\"")
+                .select()
+                .first(PAGE_SIZE)
+                .collect()
+                .asList()
+                .await()
+                .atMost(Duration.ofSeconds(30));
+
+        assertEquals(PAGE_SIZE, artifacts.size());
+        assertEquals(1, requests.get(), "Pages which are not consumed should not be fetched");
+    }
+
+    @Test
+    public void testHangingRequestFails() {
+        long start = System.nanoTime();
+
+        assertThrows(
+                PncUnavailableException.class,
+                () -> client.getBuild("1").await().atMost(Duration.ofSeconds(30)));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(REQUEST_TIMEOUT.multipliedBy(2)) < 0);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCancelledRequestReleasesItsSlot() {
+        assertThrows(
+                TimeoutException.class,
+                () -> client.getBuild("1")
+                        .ifNoItem()
+                        .after(Duration.ofMillis(100))
+                        .fail()
+                        .await()
+                        .atMost(Duration.ofSeconds(30)));
+
+        // Released before the request itself times out
+        assertEquals(0, limiter.getInFlight());
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.utils.PurlUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TestPurlUtils {
+
+    @Test
+    public void testCanonicalize() {
+        String canonical = "pkg:maven/com.beust/jcommander@1.72?classifier=sources&type=jar";
+
+        assertEquals(canonical, PurlUtils.canonicalize(canonical));
+        assertEquals(
+                canonical,
+                PurlUtils.canonicalize("pkg:maven/com.beust/jcommander@1.72?type=jar&classifier=sources"));
+        assertEquals(
+                canonical,
+                PurlUtils.canonicalize("pkg:MAVEN/com.beust/jcommander@1.72?TYPE=jar&classifier=sources"));
+        assertEquals(
+                canonical,
+                PurlUtils.canonicalize(" pkg:maven/com.beust/jcommand%65r@1.72?classifier=sources&type=jar"));
+
+        // Case-sensitive for maven, but not for pypi
+        assertNotEquals(canonical, PurlUtils.canonicalize("pkg:maven/com.beust/JCommander@1.72?type=jar"));
+        assertEquals("pkg:pypi/django@1.0", PurlUtils.canonicalize("pkg:pypi/Django@1.0"));
+    }
+
+    @Test
+    public void testCanonicalizeVersionWithPlus() {
+        assertEquals(
+                "pkg:maven/org.example/example@1.0%2Bredhat-00001?type=jar",
+                PurlUtils.canonicalize("pkg:maven/org.example/example@1.0+redhat-00001?type=jar"));
+        assertEquals(
+                PurlUtils.canonicalize("pkg:maven/org.example/example@1.0%2Bredhat-00001?type=jar"),
+                PurlUtils.canonicalize("pkg:maven/org.example/example@1.0+redhat-00001?type=jar"));
+    }
+
+    @Test
+    public void testCanonicalizeInvalid() {
+        assertEquals("not-a-purl", PurlUtils.canonicalize(" not-a-purl "));
+    }
+
+    @Test
+    public void testCanonicalizeAll() {
+        Map<String, String> canonical = PurlUtils.canonicalize(
+                List.of(
+                        "pkg:maven/com.beust/jcommander@1.72?type=jar",
+                        "pkg:MAVEN/com.beust/jcommander@1.72?type=jar",
+                        "pkg:maven/com.beust/jcommander@1.72?type=jar"));
+
+        assertEquals(2, canonical.size());
+        assertEquals(1, canonical.values().stream().distinct().count());
+    }
+
+    @Test
+    public void testHash() {
+        String purl = "pkg:maven/com.beust/jcommander@1.72?type=jar";
+
+        assertEquals(PurlUtils.hash(purl), PurlUtils.hash(new String(purl)));
+        assertNotEquals(PurlUtils.hash(purl), PurlUtils.hash("pkg:maven/com.beust/jcommander@1.73?type=jar"));
+    }
+
+}
@@ -18,8 +18,21 @@
 package org.redhat.sbomer.test;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.ws.rs.NotFoundException;
@@ -30,12 +43,22 @@ import org.cyclonedx.model.Component;
 import org.cyclonedx.model.Property;
 import org.jboss.pnc.common.json.JsonUtils;
 import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.dto.ArtifactInfo;
 import org.redhat.sbomer.dto.BaseSBOM;
+import org.redhat.sbomer.dto.BuildInfo;
 import org.redhat.sbomer.dto.response.Page;
+import org.redhat.sbomer.errors.ApplicationException;
+import org.redhat.sbomer.repositories.ArtifactCacheMissRepository;
+import org.redhat.sbomer.repositories.ArtifactCacheRepository;
+import org.redhat.sbomer.service.ArtifactCacheMaintenanceService;
+import org.redhat.sbomer.service.ArtifactInfoCache;
+import org.redhat.sbomer.service.ArtifactResolutionService;
+import org.redhat.sbomer.service.PncBuildCache;
 import org.redhat.sbomer.service.SBOMService;
 import org.redhat.sbomer.test.mock.PncServiceMock;
-import org.redhat.sbomer.transformer.PncArtifactsToPropertiesSbomTransformer;
 import org.redhat.sbomer.transformer.SbomManipulator;
+import org.redhat.sbomer.transformer.SbomTransformer;
+import org.redhat.sbomer.utils.EnrichmentFingerprint;
 import org.redhat.sbomer.validation.exceptions.ValidationException;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -46,10 +69,15 @@ import lombok.extern.slf4j.Slf4j;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.redhat.sbomer.utils.Constants.PNC_BUILD_SYSTEM;
 import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_ID;
 import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_SYSTEM;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENRICHMENT_FINGERPRINT;
 import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENVIRONMENT_IMAGE;
 import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ORIGIN_URL;
 import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_SCM_URL;
@@ -72,7 +100,22 @@ public class TestSBOMService {
     SbomManipulator sbomManipulator;
 
     @Inject
-    PncArtifactsToPropertiesSbomTransformer artifactsToPropertiesSbomTransformer;
+    ArtifactResolutionService artifactResolutionService;
+
+    @Inject
+    ArtifactCacheMissRepository artifactCacheMissRepository;
+
+    @Inject
+    ArtifactInfoCache artifactInfoCache;
+
+    @Inject
+    ArtifactCacheRepository artifactCacheRepository;
+
+    @Inject
+    ArtifactCacheMaintenanceService artifactCacheMaintenanceService;
+
+    @Inject
+    PncBuildCache pncBuildCache;
 
     private static final String INITIAL_BUILD_ID = "ARYT3LBXDVYAC";
 
@@ -144,6 +187,288 @@ public class TestSBOMService {
         }
     }
 
+    @Test
+    public void testResolutionByBuildSystem() {
+        log.info("testResolutionByBuildSystem ...");
+
+        String pncPurl = "pkg:maven/com.beust/jcommander@1.72?type=jar";
+        assertEquals(PNC_BUILD_SYSTEM, sbomService.fetchArtifact(pncPurl).getArtifactInfo().getBuildSystem());
+        assertEquals(PNC_BUILD_SYSTEM, artifactCacheRepository.getArtifactCache(pncPurl).getBuildSystem());
+    }
+
+    @Test
+    public void testNegativeCaching() {
+        log.info("testNegativeCaching ...");
+
+        String purlNotExisting = "pkg:maven/i.do.not/exist@0.0.1-" + UUID.randomUUID() + "?type=jar";
+        assertThrows(NotFoundException.class, () -> sbomService.fetchArtifact(purlNotExisting));
+        assertEquals(Set.of(purlNotExisting), artifactCacheMissRepository.getValidMisses(List.of(purlNotExisting)));
+        assertEquals(1, pncServiceMock.getArtifactLookups(purlNotExisting));
+
+        // Known to be missing, still not found, without asking PNC again
+        assertThrows(NotFoundException.class, () -> sbomService.fetchArtifact(purlNotExisting));
+        assertEquals(1, pncServiceMock.getArtifactLookups(purlNotExisting));
+
+        // Remembering the miss again replaces the entry
+        artifactCacheMissRepository.saveMisses(List.of(purlNotExisting), Duration.ofMinutes(5));
+        assertEquals(Set.of(purlNotExisting), artifactCacheMissRepository.getValidMisses(List.of(purlNotExisting)));
+
+        assertEquals(1, artifactResolutionService.purgeMisses(purlNotExisting));
+        assertTrue(artifactCacheMissRepository.getValidMisses(List.of(purlNotExisting)).isEmpty());
+
+        // Once purged, PNC is asked again
+        assertThrows(NotFoundException.class, () -> sbomService.fetchArtifact(purlNotExisting));
+        assertEquals(2, pncServiceMock.getArtifactLookups(purlNotExisting));
+    }
+
+    @Test
+    public void testConcurrentResolution() throws Exception {
+        log.info("testConcurrentResolution ...");
+
+        // Never cached before, all the resolutions miss the cache at the same time
+        String purl = PncServiceMock.generatedPurl("concurrent");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<String, org.redhat.sbomer.dto.ArtifactCache>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> artifactResolutionService.resolve(List.of(purl))));
+            }
+
+            Set<String> ids = new HashSet<>();
+            for (Future<Map<String, org.redhat.sbomer.dto.ArtifactCache>> future : futures) {
+                ids.add(future.get(30, TimeUnit.SECONDS).get(purl).getId());
+            }
+
+            // All the resolutions see the same stored artifact, fetched from PNC once
+            assertEquals(1, ids.size());
+            assertEquals(1, pncServiceMock.getArtifactLookups(purl));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Storing an artifact already stored replaces it instead of failing
+        org.redhat.sbomer.dto.ArtifactCache cached = sbomService.getArtifactCache(purl);
+        assertEquals(purl, sbomService.saveArtifactCache(cached).getPurl());
+    }
+
+    @Test
+    public void testRefreshStaleArtifacts() {
+        log.info("testRefreshStaleArtifacts ...");
+
+        String purl = "pkg:maven/com.beust/jcommander@1.72?type=jar";
+        assertTrue(artifactResolutionService.resolve(List.of(purl)).containsKey(purl));
+
+        Instant longAgo = Instant.now().minus(Duration.ofDays(30));
+        artifactCacheRepository.updateFetchedAt(List.of(purl), longAgo);
+        artifactCacheRepository.updateLastAccessed(List.of(purl), Instant.now());
+
+        assertTrue(artifactCacheMaintenanceService.refreshStaleArtifacts() >= 1);
+        assertTrue(artifactCacheRepository.getArtifactCache(purl).getFetchedAt().isAfter(longAgo));
+    }
+
+    @Test
+    public void testEvictColdArtifacts() {
+        log.info("testEvictColdArtifacts ...");
+
+        String purl = "pkg:maven/org.example/cold@1.0.0?type=jar";
+        artifactCacheRepository.upsertArtifactInfos(
+                List.of(ArtifactInfo.builder().purl(purl).identifier("org.example:cold:jar:1.0.0").build()));
+        artifactCacheRepository.updateLastAccessed(List.of(purl), Instant.EPOCH);
+
+        long maxRows = artifactCacheRepository.count() - 1;
+        assertEquals(1, artifactCacheMaintenanceService.evictColdArtifacts(maxRows));
+        assertTrue(artifactCacheRepository.getArtifactCaches(List.of(purl)).isEmpty());
+
+        // The excess is counted again, a second eviction (e.g. by another replica) deletes nothing more
+        assertEquals(0, artifactCacheMaintenanceService.evictColdArtifacts(maxRows));
+        assertNotNull(
+                artifactCacheRepository
+                        .getArtifactCache("pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar"));
+    }
+
+    @Test
+    public void testLookupNonCanonicalPurl() {
+        log.info("testLookupNonCanonicalPurl ...");
+
+        String purl = "pkg:MAVEN/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?TYPE=jar";
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> found = artifactResolutionService.lookup(List.of(purl));
+
+        assertEquals(1, found.size());
+        assertEquals(
+                "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar",
+                found.get(purl).getPurl());
+    }
+
+    @Test
+    public void testArtifactInfoCache() {
+        log.info("testArtifactInfoCache ...");
+
+        String purl = "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar";
+        artifactInfoCache.invalidate(List.of(purl));
+
+        long hits = artifactInfoCache.stats().hitCount();
+        org.redhat.sbomer.dto.ArtifactCache fromDB = sbomService.getArtifactCache(purl);
+        assertEquals(hits, artifactInfoCache.stats().hitCount());
+
+        org.redhat.sbomer.dto.ArtifactCache fromMemory = sbomService.getArtifactCache(purl);
+        assertEquals(hits + 1, artifactInfoCache.stats().hitCount());
+        assertSame(fromDB, fromMemory);
+        assertSame(fromDB.getArtifactInfo(), fromMemory.getArtifactInfo());
+
+        artifactInfoCache.invalidate(List.of(purl));
+        assertTrue(artifactInfoCache.getAllPresent(List.of(purl)).isEmpty());
+    }
+
+    @Test
+    public void testPncBuildCache() {
+        log.info("testPncBuildCache ...");
+
+        // Stored along with the brotli4j artifact, PNC is not asked for it
+        BuildInfo stored = pncBuildCache.get("AVOBVY3O23YAA");
+        assertEquals("6f25bf15308ee95ef5a9783412be2b0557c9046d", stored.getScmRevision());
+        assertSame(stored, pncBuildCache.get("AVOBVY3O23YAA"));
+
+        // The builds embedded in the artifacts fetched from PNC are cached too
+        String purl = "pkg:maven/com.vaadin.external.google/android-json@0.0.20131108.vaadin1?type=jar";
+        assertTrue(artifactResolutionService.resolve(List.of(purl)).containsKey(purl));
+        assertEquals("0.0.20131108.vaadin1", pncBuildCache.get("MOCKMOCKMOCK1").getScmTag());
+
+        // Unknown to PNC, as the generations report it
+        assertThrows(ApplicationException.class, () -> pncBuildCache.get("I-DO-NOT-EXIST"));
+    }
+
+    @Test
+    public void testPrefetchBuildArtifacts() {
+        log.info("testPrefetchBuildArtifacts ...");
+
+        List<String> purls = List.of(
+                "pkg:maven/com.vaadin.external.google/android-json@0.0.20131108.vaadin1?type=jar",
+                "pkg:maven/com.beust/jcommander@1.72?type=jar",
+                "pkg:maven/org.eclipse.microprofile.graphql/microprofile-graphql-api@1.1.0.redhat-00008?type=jar");
+
+        artifactResolutionService.prefetch("MOCKMOCKMOCK1");
+
+        // All the artifacts of the build are found without asking PNC
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> cached = artifactResolutionService.lookup(purls);
+        assertEquals(purls.size(), cached.size());
+        assertEquals("PNC", cached.get(purls.get(1)).getArtifactInfo().getBuildSystem());
+
+        // Nothing left to store
+        assertEquals(0, artifactResolutionService.prefetch("MOCKMOCKMOCK1"));
+    }
+
+    @Test
+    public void testTransformerChains() {
+        log.info("testTransformerChains ...");
+
+        List<SbomTransformer> chain = sbomManipulator.getTransformers(SbomManipulator.PROPERTIES_SPEC);
+        assertEquals(1, chain.size());
+        assertEquals(chain, sbomManipulator.getTransformers("PROPERTIES"));
+        assertEquals(chain, sbomManipulator.getTransformers(null));
+        assertEquals(chain, sbomManipulator.getTransformers("i-do-not-exist"));
+        assertThrows(UnsupportedOperationException.class, () -> chain.add(chain.get(0)));
+    }
+
+    @Test
+    public void testIncrementalEnrichment() throws ParseException {
+        log.info("testIncrementalEnrichment ...");
+
+        BaseSBOM baseSBOM = sbomService.getBaseSbom(INITIAL_BUILD_ID);
+        Bom bom = new org.cyclonedx.parsers.JsonParser().parse(baseSBOM.getBom().textValue().getBytes());
+
+        String purl = "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar";
+        Map<String, String> fingerprints = new HashMap<>();
+        Bom enrichedBom = sbomManipulator.runTransformers(SbomManipulator.PROPERTIES_SPEC, bom, fingerprints);
+        Component component = findComponentWithPurl(purl, enrichedBom).get();
+        String fingerprint = fingerprints.get(purl);
+        assertTrue(EnrichmentFingerprint.isCurrentVersion(fingerprint));
+        // Fingerprints are not published in the SBOM
+        assertTrue(findPropertyWithNameInComponent(SBOM_RED_HAT_ENRICHMENT_FINGERPRINT, component).isEmpty());
+        int properties = component.getProperties().size();
+        int hashes = component.getHashes().size();
+
+        // Components already enriched with the same information are left untouched
+        Bom reEnrichedBom = sbomManipulator.runTransformers(SbomManipulator.PROPERTIES_SPEC, enrichedBom, fingerprints);
+        component = findComponentWithPurl(purl, reEnrichedBom).get();
+        assertEquals(fingerprint, fingerprints.get(purl));
+        assertEquals(properties, component.getProperties().size());
+        assertEquals(hashes, component.getHashes().size());
+    }
+
+    @Test
+    public void testEnrichmentResolvesEvictedArtifacts() {
+        log.info("testEnrichmentResolvesEvictedArtifacts ...");
+
+        // Enriched before, but not in the cache anymore
+        String purl = PncServiceMock.generatedPurl("evicted");
+        Map<String, org.redhat.sbomer.dto.ArtifactCache> resolved = artifactResolutionService
+                .resolveForEnrichment(Map.of(purl, EnrichmentFingerprint.VERSION + ":outdated"));
+
+        assertTrue(resolved.containsKey(purl));
+        assertEquals(1, pncServiceMock.getArtifactLookups(purl));
+
+        // Enriched with the same information, nothing to do
+        String fingerprint = EnrichmentFingerprint.of(resolved.get(purl).getArtifactInfo());
+        assertTrue(artifactResolutionService.resolveForEnrichment(Map.of(purl, fingerprint)).isEmpty());
+    }
+
+    @Test
+    public void testNestedComponentsEnrichment() {
+        log.info("testNestedComponentsEnrichment ...");
+
+        String purl = "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar";
+
+        Component nested = new Component();
+        nested.setName("brotli4j");
+        nested.setVersion("1.8.0.redhat-00003");
+        nested.setPurl(purl);
+
+        Component assembly = new Component();
+        assembly.setName("assembly");
+        assembly.setVersion("1.0.0");
+        assembly.setPurl("pkg:maven/org.example/assembly@1.0.0?type=zip");
+        assembly.setComponents(new ArrayList<>(List.of(nested)));
+
+        Bom bom = new Bom();
+        bom.setComponents(new ArrayList<>(List.of(assembly)));
+
+        sbomManipulator.runTransformers(SbomManipulator.PROPERTIES_SPEC, bom);
+
+        assertEquals("AVOBVY3O23YAA", findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, nested).get().getValue());
+        assertNull(assembly.getProperties());
+    }
+
+    @Test
+    public void testTransformerResolvesArtifactsInChunks() {
+        log.info("testTransformerResolvesArtifactsInChunks ...");
+
+        // More purls than fit in a single PNC query (sbomer.pnc.artifact-query-chunk-size)
+        List<Component> components = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            String purl = PncServiceMock.generatedPurl("component-" + i);
+            Component component = new Component();
+            component.setName("component-" + i);
+            component.setVersion(purl.substring(purl.indexOf('@') + 1, purl.indexOf('?')));
+            component.setPurl(purl);
+            components.add(component);
+        }
+
+        Bom bom = new Bom();
+        bom.setComponents(new ArrayList<>(components));
+
+        int queries = pncServiceMock.getArtifactQueries();
+        sbomManipulator.runTransformers(SbomManipulator.PROPERTIES_SPEC, bom);
+
+        // Every purl is fetched once, with one query per chunk
+        assertEquals(queries + 3, pncServiceMock.getArtifactQueries());
+        for (Component component : components) {
+            assertEquals(1, pncServiceMock.getArtifactLookups(component.getPurl()));
+            assertEquals(
+                    "MOCKGENERATED",
+                    findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, component).get().getValue());
+        }
+    }
+
     @Test
     public void testManipulateSBOMAddingProperties() {
         log.info("testManipulateSBOMAddingProperties ...");
@@ -152,7 +477,7 @@ public class TestSBOMService {
             BaseSBOM baseSBOM = sbomService.getBaseSbom(INITIAL_BUILD_ID);
             Bom bom = new org.cyclonedx.parsers.JsonParser().parse(baseSBOM.getBom().textValue().getBytes());
 
-            Bom modifiedBom = sbomManipulator.addTransformer(artifactsToPropertiesSbomTransformer).runTransformers(bom);
+            Bom modifiedBom = sbomManipulator.runTransformers(SbomManipulator.PROPERTIES_SPEC, bom);
 
             Component notFoundInCacheNorPNCComponent = findComponentWithPurl(
                     "pkg:maven/commons-io/commons-io@2.6.0.redhat-00001?type=jar",
@@ -0,0 +1,122 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.cyclonedx.exception.ParseException;
+import org.cyclonedx.model.Bom;
+import org.cyclonedx.model.Component;
+import org.cyclonedx.parsers.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.repositories.BaseSBOMRepository;
+import org.redhat.sbomer.service.EnrichmentResult;
+import org.redhat.sbomer.service.SBOMService;
+import org.redhat.sbomer.utils.EnrichmentFingerprint;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_ID;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENRICHMENT_FINGERPRINT;
+import static org.redhat.sbomer.utils.SbomUtils.findComponentWithPurl;
+import static org.redhat.sbomer.utils.SbomUtils.findPropertyWithNameInComponent;
+
+/**
+ * Runs the enrichment with {@code sbomer.enrichment.streaming} enabled, reading and writing the stored SBOM through
+ * JDBC streams.
+ */
+@QuarkusTest
+@TestProfile(TestStreamingEnrichment.StreamingEnrichmentProfile.class)
+public class TestStreamingEnrichment {
+
+    public static class StreamingEnrichmentProfile implements QuarkusTestProfile {
+
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of("sbomer.enrichment.streaming", "true");
+        }
+    }
+
+    private static final String INITIAL_BUILD_ID = "ARYT3LBXDVYAC";
+    private static final String RH_PURL = "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar";
+    private static final String UPSTREAM_PURL = "pkg:maven/com.beust/jcommander@1.72?type=jar";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Inject
+    SBOMService sbomService;
+
+    @Inject
+    BaseSBOMRepository baseSbomRepository;
+
+    @Test
+    public void testStreamingEnrichment() throws IOException, ParseException {
+        EnrichmentResult result = sbomService.enrichBaseSbom(INITIAL_BUILD_ID, null);
+
+        assertTrue(result.getComponentCount() > 0);
+        assertTrue(result.getRhComponentCount() > 0);
+
+        Bom bom = readStoredBom();
+        Component rhComponent = findComponentWithPurl(RH_PURL, bom).orElseThrow();
+        assertTrue(findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, rhComponent).isPresent());
+        // Fingerprints are kept along with the SBOM, not published in it
+        assertTrue(findPropertyWithNameInComponent(SBOM_RED_HAT_ENRICHMENT_FINGERPRINT, rhComponent).isEmpty());
+        assertTrue(
+                EnrichmentFingerprint
+                        .isCurrentVersion(baseSbomRepository.getEnrichmentFingerprints(INITIAL_BUILD_ID).get(RH_PURL)));
+
+        Component upstreamComponent = findComponentWithPurl(UPSTREAM_PURL, bom).orElseThrow();
+        assertTrue(findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, upstreamComponent).isEmpty());
+    }
+
+    @Test
+    public void testUpdateSbomRoundTrip() throws IOException {
+        String original = baseSbomRepository.readSbom(INITIAL_BUILD_ID, reader -> unwrap(mapper.readTree(reader)))
+                .toString();
+
+        baseSbomRepository.updateSbom(INITIAL_BUILD_ID, new StringReader(original), Map.of(RH_PURL, "fingerprint"));
+
+        JsonNode stored = baseSbomRepository.readSbom(INITIAL_BUILD_ID, reader -> unwrap(mapper.readTree(reader)));
+        assertEquals(mapper.readTree(original), stored);
+        assertEquals(Map.of(RH_PURL, "fingerprint"), baseSbomRepository.getEnrichmentFingerprints(INITIAL_BUILD_ID));
+    }
+
+    private Bom readStoredBom() throws IOException, ParseException {
+        JsonNode stored = baseSbomRepository.readSbom(INITIAL_BUILD_ID, reader -> unwrap(mapper.readTree(reader)));
+        return new JsonParser().parse(stored.toString().getBytes());
+    }
+
+    /**
+     * The test database stores the SBOM as a JSON string containing the document.
+     */
+    private JsonNode unwrap(JsonNode node) throws IOException {
+        return node.isTextual() ? mapper.readTree(node.textValue()) : node;
+    }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.cyclonedx.model.Bom;
+import org.cyclonedx.model.Component;
+import org.cyclonedx.parsers.JsonParser;
+import org.jboss.pnc.common.json.JsonUtils;
+import org.junit.jupiter.api.Test;
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.service.EnrichmentResult;
+import org.redhat.sbomer.transformer.StreamingSbomEnricher;
+import org.redhat.sbomer.utils.Constants;
+import org.redhat.sbomer.utils.EnrichmentFingerprint;
+import org.redhat.sbomer.validation.exceptions.ValidationException;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_BUILD_ID;
+import static org.redhat.sbomer.utils.Constants.SBOM_RED_HAT_ENRICHMENT_FINGERPRINT;
+import static org.redhat.sbomer.utils.SbomUtils.findComponentWithPurl;
+import static org.redhat.sbomer.utils.SbomUtils.findPropertyWithNameInComponent;
+
+public class TestStreamingSbomEnricher {
+
+    private static final String RH_PURL = "pkg:maven/com.aayushatharva.brotli4j/brotli4j@1.8.0.redhat-00003?type=jar";
+    private static final String UPSTREAM_PURL = "pkg:maven/com.beust/jcommander@1.72?type=jar";
+
+    private static final String BOM = "{\"bomFormat\":\"CycloneDX\",\"specVersion\":\"1.4\",\"version\":1,"
+            + "\"metadata\":{\"component\":{\"type\":\"library\",\"name\":\"root\",\"version\":\"1.0.0\"}},"
+            + "\"components\":["
+            + "{\"type\":\"library\",\"name\":\"brotli4j\",\"version\":\"1.8.0.redhat-00003\",\"purl\":\"" + RH_PURL
+            + "\"},"
+            + "{\"type\":\"library\",\"name\":\"jcommander\",\"version\":\"1.72\",\"purl\":\"" + UPSTREAM_PURL
+            + "\"}],"
+            + "\"dependencies\":[{\"ref\":\"" + RH_PURL + "\",\"dependsOn\":[]}]}";
+
+    private final StreamingSbomEnricher enricher = new StreamingSbomEnricher();
+
+    @Test
+    public void testCollectRhComponents() throws IOException {
+        assertEquals(Set.of(RH_PURL), enricher.collectRhComponents(new StringReader(BOM)));
+    }
+
+    @Test
+    public void testCollectRhComponentsFromJsonString() throws IOException {
+        String wrapped = TextNode.valueOf(BOM).toString();
+
+        assertEquals(Set.of(RH_PURL), enricher.collectRhComponents(new StringReader(wrapped)));
+    }
+
+    @Test
+    public void testCollectRhComponentsFromEscapedJsonString() throws IOException {
+        String wrapped = "\n \"" + BOM.replace("\"", "\\u0022").replace(",", ",\\n\\t") + "\"";
+
+        assertEquals(Set.of(RH_PURL), enricher.collectRhComponents(new StringReader(wrapped)));
+    }
+
+    @Test
+    public void testUnterminatedJsonString() {
+        String wrapped = TextNode.valueOf(BOM).toString();
+        String truncated = wrapped.substring(0, wrapped.length() - 1);
+
+        assertThrows(IOException.class, () -> enricher.collectRhComponents(new StringReader(truncated)));
+    }
+
+    @Test
+    public void testEnrich() throws Exception {
+        ArtifactInfo info = JsonUtils
+                .fromJson(TestResources.asString("sboms/artifact-info.json"), ArtifactInfo.class);
+
+        StringWriter out = new StringWriter();
+        Map<String, String> fingerprints = new HashMap<>();
+        EnrichmentResult result = enricher.enrich(new StringReader(BOM), out, Map.of(RH_PURL, info), fingerprints);
+
+        assertEquals(2, result.getComponentCount());
+        assertEquals(1, result.getRhComponentCount());
+
+        Bom bom = new JsonParser().parse(out.toString().getBytes());
+        assertEquals(1, bom.getDependencies().size());
+        assertEquals("root", bom.getMetadata().getComponent().getName());
+
+        Component rhComponent = findComponentWithPurl(RH_PURL, bom).orElseThrow();
+        assertEquals(3, rhComponent.getHashes().size());
+        assertEquals(Constants.PUBLISHER, rhComponent.getPublisher());
+        assertEquals(Constants.MRRC_URL, rhComponent.getExternalReferences().get(0).getUrl());
+        assertTrue(findPropertyWithNameInComponent(SBOM_RED_HAT_ENRICHMENT_FINGERPRINT, rhComponent).isEmpty());
+        assertEquals(Map.of(RH_PURL, EnrichmentFingerprint.of(info)), fingerprints);
+        assertEquals(
+                info.getBuildId(),
+                findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, rhComponent).orElseThrow().getValue());
+
+        Component upstreamComponent = findComponentWithPurl(UPSTREAM_PURL, bom).orElseThrow();
+        assertTrue(upstreamComponent.getProperties() == null || upstreamComponent.getProperties().isEmpty());
+        assertNotNull(upstreamComponent.getVersion());
+    }
+
+    @Test
+    public void testReEnrichment() throws Exception {
+        ArtifactInfo info = JsonUtils
+                .fromJson(TestResources.asString("sboms/artifact-info.json"), ArtifactInfo.class);
+
+        StringWriter first = new StringWriter();
+        Map<String, String> fingerprints = new HashMap<>();
+        enricher.enrich(new StringReader(BOM), first, Map.of(RH_PURL, info), fingerprints);
+        assertEquals(EnrichmentFingerprint.of(info), fingerprints.get(RH_PURL));
+
+        // Same information, nothing changes
+        StringWriter second = new StringWriter();
+        enricher.enrich(new StringReader(first.toString()), second, Map.of(RH_PURL, info), fingerprints);
+        assertEquals(first.toString(), second.toString());
+
+        // Changed information replaces the one added before
+        ArtifactInfo changed = info.toBuilder().buildId("CHANGED").build();
+        StringWriter third = new StringWriter();
+        enricher.enrich(new StringReader(first.toString()), third, Map.of(RH_PURL, changed), fingerprints);
+
+        Component component = findComponentWithPurl(
+                RH_PURL,
+                new JsonParser().parse(third.toString().getBytes())).orElseThrow();
+        assertEquals(
+                "CHANGED",
+                findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, component).orElseThrow().getValue());
+        assertEquals(EnrichmentFingerprint.of(changed), fingerprints.get(RH_PURL));
+        assertEquals(9, component.getProperties().size());
+    }
+
+    @Test
+    public void testLegacyFingerprintIsRemoved() throws Exception {
+        String legacy = BOM.replace(
+                "\"purl\":\"" + RH_PURL + "\"",
+                "\"purl\":\"" + RH_PURL + "\",\"properties\":[{\"name\":\"" + SBOM_RED_HAT_ENRICHMENT_FINGERPRINT
+                        + "\",\"value\":\"1:abc\"},{\"name\":\"" + SBOM_RED_HAT_BUILD_ID
+                        + "\",\"value\":\"OUTDATED\"}]");
+        ArtifactInfo info = JsonUtils
+                .fromJson(TestResources.asString("sboms/artifact-info.json"), ArtifactInfo.class);
+
+        StringWriter out = new StringWriter();
+        enricher.enrich(new StringReader(legacy), out, Map.of(RH_PURL, info), new HashMap<>());
+
+        Component component = findComponentWithPurl(RH_PURL, new JsonParser().parse(out.toString().getBytes()))
+                .orElseThrow();
+        assertTrue(findPropertyWithNameInComponent(SBOM_RED_HAT_ENRICHMENT_FINGERPRINT, component).isEmpty());
+        // Components enriched by a previous version get their information replaced
+        assertEquals(
+                info.getBuildId(),
+                findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, component).orElseThrow().getValue());
+    }
+
+    @Test
+    public void testNestedComponents() throws Exception {
+        String nested = "{\"bomFormat\":\"CycloneDX\",\"specVersion\":\"1.4\",\"version\":1,\"components\":["
+                + "{\"type\":\"library\",\"name\":\"assembly\",\"version\":\"1.0.0\","
+                + "\"purl\":\"pkg:maven/a/assembly@1.0.0\","
+                + "\"components\":[{\"type\":\"library\",\"name\":\"brotli4j\",\"version\":\"1.8.0.redhat-00003\","
+                + "\"purl\":\"" + RH_PURL + "\"}]},"
+                + "{\"type\":\"library\",\"name\":\"brotli4j\",\"version\":\"1.8.0.redhat-00003\",\"purl\":\"" + RH_PURL
+                + "\"}]}";
+        ArtifactInfo info = JsonUtils
+                .fromJson(TestResources.asString("sboms/artifact-info.json"), ArtifactInfo.class);
+
+        assertEquals(Set.of(RH_PURL), enricher.collectRhComponents(new StringReader(nested)));
+
+        StringWriter out = new StringWriter();
+        EnrichmentResult result = enricher
+                .enrich(new StringReader(nested), out, Map.of(RH_PURL, info), new HashMap<>());
+        assertEquals(3, result.getComponentCount());
+        assertEquals(2, result.getRhComponentCount());
+
+        Bom bom = new JsonParser().parse(out.toString().getBytes());
+        Component nestedComponent = bom.getComponents().get(0).getComponents().get(0);
+        assertEquals(
+                info.getBuildId(),
+                findPropertyWithNameInComponent(SBOM_RED_HAT_BUILD_ID, nestedComponent).orElseThrow().getValue());
+    }
+
+    @Test
+    public void testInvalidSbom() {
+        assertThrows(ValidationException.class, () -> enricher.collectRhComponents(new StringReader("[]")));
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test.mock;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Alternative;
+
+import org.redhat.sbomer.dto.ArtifactInfo;
+import org.redhat.sbomer.service.resolver.ArtifactResolver;
+
+import io.smallrye.mutiny.Uni;
+
+import static org.redhat.sbomer.utils.Constants.BREW_BUILD_SYSTEM;
+
+/**
+ * A second build system, knowing the artifacts in the {@link #BREW_NAMESPACE} which PNC does not know, and the
+ * generated artifacts of PNC whose names start with {@link #SHARED_PREFIX}. Only enabled by the
+ * {@link BrewResolverProfile}.
+ */
+@Alternative
+@ApplicationScoped
+public class BrewArtifactResolverMock implements ArtifactResolver {
+
+    public static final String BREW_NAMESPACE = "pkg:maven/org.example.brew/";
+
+    public static final String BREW_PURL = BREW_NAMESPACE + "brew-only@1.0.0.redhat-00001?type=jar";
+
+    /**
+     * Generated purls (see {@link PncServiceMock#generatedPurl(String)}) whose name starts with this are known to
+     * both build systems.
+     */
+    public static final String SHARED_PREFIX = "shared-";
+
+    /**
+     * Returns a purl in the {@link #BREW_NAMESPACE}, unique to the test run.
+     */
+    public static String brewPurl(String name) {
+        return BREW_NAMESPACE + name + "@1.0.0.redhat-" + UUID.randomUUID().toString().substring(0, 8) + "?type=jar";
+    }
+
+    @Override
+    public String getBuildSystem() {
+        return BREW_BUILD_SYSTEM;
+    }
+
+    @Override
+    public Duration getTimeout() {
+        return Duration.ofSeconds(10);
+    }
+
+    @Override
+    public Uni<Map<String, ArtifactInfo>> resolve(List<String> purls) {
+        return Uni.createFrom().item(() -> {
+            Map<String, ArtifactInfo> artifacts = new HashMap<>();
+            for (String purl : purls) {
+                if (purl.startsWith(BREW_NAMESPACE)) {
+                    artifacts.put(
+                            purl,
+                            ArtifactInfo.builder()
+                                    .identifier(purl.substring(BREW_NAMESPACE.length()))
+                                    .purl(purl)
+                                    .sha256("5f0b6a2ff5c8e6dfb1e3e3d8c3e4a3e2b1c0d9e8f7a6b5c4d3e2f1a0b9c8d7e6")
+                                    .build());
+                } else if (purl.startsWith(PncServiceMock.GENERATED_NAMESPACE + SHARED_PREFIX)) {
+                    artifacts.put(
+                            purl,
+                            ArtifactInfo.builder()
+                                    .identifier(purl.substring(PncServiceMock.GENERATED_NAMESPACE.length()))
+                                    .purl(purl)
+                                    .sha256(String.format("%064x", 0))
+                                    .build());
+                }
+            }
+            return artifacts;
+        });
+    }
+
+}
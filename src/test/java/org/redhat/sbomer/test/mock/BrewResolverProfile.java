@@ -0,0 +1,45 @@
+/**
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2023 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.redhat.sbomer.test.mock;
+
+import java.util.Map;
+import java.util.Set;
+
+import io.quarkus.test.junit.QuarkusTestProfile;
+
+/**
+ * Resolves the artifacts with a second build system, the {@link BrewArtifactResolverMock}, next to PNC.
+ */
+public class BrewResolverProfile implements QuarkusTestProfile {
+
+    /**
+     * Deadline of the PNC resolver, shorter than the default one so that tests can tell whether it was reached.
+     */
+    public static final String PNC_TIMEOUT = "5s";
+
+    @Override
+    public Set<Class<?>> getEnabledAlternatives() {
+        return Set.of(BrewArtifactResolverMock.class);
+    }
+
+    @Override
+    public Map<String, String> getConfigOverrides() {
+        return Map.of("sbomer.resolver.pnc.timeout", PNC_TIMEOUT);
+    }
+
+}
@@ -17,30 +17,152 @@
  */
 package org.redhat.sbomer.test.mock;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import org.jboss.pnc.dto.Artifact;
 import org.jboss.pnc.dto.Build;
 import org.jboss.pnc.dto.Environment;
 import org.jboss.pnc.dto.SCMRepository;
 import org.jboss.pnc.dto.TargetRepository;
 import org.jboss.pnc.dto.User;
+import org.redhat.sbomer.errors.ApplicationException;
 import org.redhat.sbomer.service.PNCService;
 
 import io.quarkus.test.Mock;
+import io.smallrye.mutiny.Uni;
 import lombok.extern.slf4j.Slf4j;
 
 @Mock
 @Slf4j
 public class PncServiceMock extends PNCService {
 
+    /**
+     * Purls in this namespace are known to the mock, with generated artifacts, so that tests can use purls which
+     * were never cached by other tests.
+     */
+    public static final String GENERATED_NAMESPACE = "pkg:maven/org.example.pnc/";
+
+    /**
+     * Any query for this purl fails, as PNC queries do when a purl matches several artifacts.
+     */
+    public static final String FAILING_PURL = "pkg:maven/org.example.failing/duplicated@1.0.0?type=jar";
+
+    private final AtomicInteger artifactQueries = new AtomicInteger();
+
+    /**
+     * Purls of every query for several artifacts, in the order of the queries.
+     */
+    private final Queue<Set<String>> artifactQueryPurls = new ConcurrentLinkedQueue<>();
+
+    private volatile Duration artifactQueryDelay = Duration.ZERO;
+
+    private final Map<String, AtomicInteger> artifactLookups = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a purl in the {@link #GENERATED_NAMESPACE}, unique to the test run.
+     */
+    public static String generatedPurl(String name) {
+        return GENERATED_NAMESPACE + name + "@1.0.0.redhat-" + UUID.randomUUID().toString().substring(0, 8)
+                + "?type=jar";
+    }
+
+    /**
+     * Number of artifact queries sent to the mock so far, a query can look up several purls.
+     */
+    public int getArtifactQueries() {
+        return artifactQueries.get();
+    }
+
+    /**
+     * Purls of the queries for several artifacts which included the purl so far, in the order of the queries.
+     */
+    public List<Set<String>> getArtifactQueriesOf(String purl) {
+        return artifactQueryPurls.stream().filter(purls -> purls.contains(purl)).collect(Collectors.toList());
+    }
+
+    /**
+     * Delays the answers of the artifact queries, as a slow PNC would.
+     */
+    public void setArtifactQueryDelay(Duration artifactQueryDelay) {
+        this.artifactQueryDelay = artifactQueryDelay;
+    }
+
+    /**
+     * Number of times the purl was looked up so far.
+     */
+    public int getArtifactLookups(String purl) {
+        AtomicInteger lookups = artifactLookups.get(purl);
+        return lookups == null ? 0 : lookups.get();
+    }
+
+    /**
+     * Knows the builds of the mocked artifacts, and fails for other builds as PNC does.
+     */
     @Override
-    public Build getBuild(String buildId) {
-        return null;
+    public Uni<Build> getBuildAsync(String buildId) {
+        return Uni.createFrom().item(() -> {
+            log.debug("getBuild {}", buildId);
+            return Stream.of(createArtifactMock1(), createArtifactMock2(), createArtifactMock3())
+                    .map(Artifact::getBuild)
+                    .filter(build -> build.getId().equals(buildId))
+                    .findFirst()
+                    .orElseThrow(() -> new ApplicationException("Build was not found in PNC"));
+        });
     }
 
     @Override
-    public Artifact getArtifact(String purl) {
+    public Uni<Artifact> getArtifactAsync(String purl) {
+        artifactQueries.incrementAndGet();
+        return Uni.createFrom().item(() -> findArtifact(purl));
+    }
+
+    @Override
+    public Uni<Map<String, Artifact>> getArtifactsAsync(Collection<String> purls) {
+        artifactQueries.incrementAndGet();
+        artifactQueryPurls.add(Set.copyOf(purls));
+        if (purls.contains(FAILING_PURL)) {
+            return Uni.createFrom()
+                    .failure(new IllegalStateException("There should exist only one artifact with purl " + FAILING_PURL));
+        }
+        Uni<Map<String, Artifact>> artifacts = Uni.createFrom().item(() -> {
+            Map<String, Artifact> found = new HashMap<>();
+            for (String purl : purls) {
+                Artifact artifact = findArtifact(purl);
+                if (artifact != null) {
+                    found.put(purl, artifact);
+                }
+            }
+            return found;
+        });
+        Duration delay = artifactQueryDelay;
+        return delay.isZero() ? artifacts : artifacts.onItem().delayIt().by(delay);
+    }
+
+    @Override
+    public Uni<List<Artifact>> getBuildArtifactsAsync(String buildId) {
+        log.debug("getBuildArtifacts {}", buildId);
+        return Uni.createFrom()
+                .item(() -> List.of(createArtifactMock1(), createArtifactMock2(), createArtifactMock3()));
+    }
+
+    private Artifact findArtifact(String purl) {
         log.debug("getArtifact {}", purl);
-        if ("pkg:maven/com.vaadin.external.google/android-json@0.0.20131108.vaadin1?type=jar".equalsIgnoreCase(purl)) {
+        artifactLookups.computeIfAbsent(purl, p -> new AtomicInteger()).incrementAndGet();
+        if (purl.startsWith(GENERATED_NAMESPACE)) {
+            return createGeneratedArtifact(purl);
+        } else if ("pkg:maven/com.vaadin.external.google/android-json@0.0.20131108.vaadin1?type=jar".equalsIgnoreCase(purl)) {
             return createArtifactMock1();
         } else if ("pkg:maven/com.beust/jcommander@1.72?type=jar".equalsIgnoreCase(purl)) {
             return createArtifactMock2();
@@ -52,6 +174,22 @@ public class PncServiceMock extends PNCService {
         return null;
     }
 
+    private Artifact createGeneratedArtifact(String purl) {
+        Build build = Build.builder()
+                .id("MOCKGENERATED")
+                .scmRevision("0f25bf15308ee95ef5a9783412be2b0557c9046d")
+                .scmUrl("https://code.engineering.redhat.com/gerrit/example/generated.git")
+                .build();
+
+        return Artifact.builder()
+                .build(build)
+                .id(String.valueOf(Math.abs(purl.hashCode())))
+                .identifier(purl.substring(GENERATED_NAMESPACE.length()))
+                .purl(purl)
+                .sha256(String.format("%064x", Math.abs((long) purl.hashCode())))
+                .build();
+    }
+
     private Artifact createArtifactMock1() {
 
         Environment environment = Environment.builder()